@@ -0,0 +1,62 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One Autopilot decision from a mid-game junction, sampled so the percentiles show
+ * how closely the search keeps to its time budget.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AutopilotBenchmark {
+
+    @Param({"1", "5"})
+    public int budgetMillis;
+
+    private Simulation simulation;
+    private Autopilot autopilot;
+
+    @Setup
+    public void setup() {
+        simulation = new Simulation(0, 1, 42);
+        autopilot = new Autopilot(budgetMillis * 1_000_000L, Runtime.getRuntime().availableProcessors() - 1);
+        // Let the autopilot play until Pac-Man stands on a junction with the ghosts out
+        NavGraph nav = simulation.getMaze().getNavGraph();
+        PacMan pacMan = simulation.getPacMan();
+        while (!simulation.isGameOver()) {
+            boolean onTile = pacMan.getX() == pacMan.getTileX() * Maze.TILE_SIZE
+                    && pacMan.getY() == pacMan.getTileY() * Maze.TILE_SIZE;
+            if (simulation.getTick() >= 300 && onTile && pacMan.isAlive()
+                    && nav.isJunction(NavGraph.cellOf(pacMan.getTileX(), pacMan.getTileY()))) {
+                break;
+            }
+            simulation.step(autopilot.nextInput(simulation));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        autopilot.dispose();
+    }
+
+    @Benchmark
+    public Direction decide() {
+        return autopilot.decide(simulation);
+    }
+}
@@ -0,0 +1,90 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Ghost AI decisions, taken mid-game once every ghost has left the ghost house,
+ * and each GhostBrain deciding for all four ghosts, to compare AIs with each other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GhostBenchmark {
+
+    private Simulation simulation;
+    private Ghost[] ghosts;
+    private PacMan pacMan;
+    private WorldView world;
+
+    /**
+     * The brain under test, one run per parameter
+     */
+    @State(Scope.Thread)
+    public static class Brain {
+
+        @Param({"chaser", "ambusher", "flanker", "shy"})
+        public String name;
+        GhostBrain brain;
+
+        @Setup
+        public void setup() {
+            switch (name) {
+                case "ambusher": brain = GhostBrain.ambusher(); break;
+                case "flanker": brain = GhostBrain.flanker(); break;
+                case "shy": brain = GhostBrain.shy(); break;
+                default: brain = GhostBrain.chaser();
+            }
+        }
+    }
+
+    @Setup
+    public void setup() {
+        simulation = new Simulation(0, 1, 42);
+        // Pac-Man stays put so the game lasts until all ghosts are out
+        for (int i = 0; i < 400 && !simulation.isGameOver(); i++) {
+            simulation.step(null);
+        }
+        ghosts = simulation.getGhosts();
+        pacMan = simulation.getPacMan();
+        world = new WorldView(ghosts);
+        world.update(simulation.getMaze(), pacMan, ghosts);
+    }
+
+    @Benchmark
+    public void chooseDirection(Blackhole blackhole) {
+        for (Ghost ghost : ghosts) {
+            ghost.chooseDirection(world);
+            blackhole.consume(ghost.getDirection());
+        }
+    }
+
+    @Benchmark
+    public void getBestDirection(Blackhole blackhole) {
+        for (Ghost ghost : ghosts) {
+            // All four exits open, so every candidate is scored
+            blackhole.consume(ghost.getBestDirection(0b1111, pacMan.getTileX(), pacMan.getTileY()));
+        }
+    }
+
+    @Benchmark
+    public void brain(Brain brain, Blackhole blackhole) {
+        for (Ghost ghost : ghosts) {
+            blackhole.consume(brain.brain.chooseDirection(ghost.getTileX(), ghost.getTileY(), 0b1111, world));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Maze setup and reset, the work behind GameBoard.initMaze() and GameBoard.resetMaze().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MazeBenchmark {
+
+    private Maze maze;
+
+    @Setup
+    public void setup() {
+        maze = new Maze(0);
+    }
+
+    @Benchmark
+    public int initMaze() {
+        maze.init();
+        return maze.getDotsRemaining();
+    }
+
+    @Benchmark
+    public int resetMaze() {
+        maze.eatDot(1, 1);
+        maze.reset();
+        return maze.getDotsRemaining();
+    }
+}
@@ -0,0 +1,42 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pac-Man movement, bouncing along the bottom corridor of the classic maze.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacManBenchmark {
+
+    private PacMan pacMan;
+
+    @Setup
+    public void setup() {
+        pacMan = new PacMan(new Maze(0));
+        pacMan.setDirection(Direction.LEFT);
+    }
+
+    @Benchmark
+    public double update() {
+        if (!pacMan.isMoving() && pacMan.getDirection() != Direction.NONE) {
+            pacMan.setDirection(pacMan.getDirection().getOpposite());
+        }
+        pacMan.update();
+        return pacMan.getX();
+    }
+}
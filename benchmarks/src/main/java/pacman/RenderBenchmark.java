@@ -0,0 +1,59 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GameBoard.render() into an offscreen canvas that is never shown.
+ * This measures the cost of issuing the draw calls on the FX side, not GPU rasterization.
+ *
+ * An offscreen canvas never gets a pulse to consume its queued draw commands; only a
+ * full repaint drops them, so the incremental benchmark forces one every FLUSH_FRAMES frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    private static final int FLUSH_FRAMES = 600;
+
+    private GameBoard gameBoard;
+    private Simulation simulation;
+    private int frames;
+
+    @Setup
+    public void setup() {
+        gameBoard = new GameBoard(0);
+        simulation = new Simulation(gameBoard.getMaze(), 1, 42);
+        for (int i = 0; i < 400 && !simulation.isGameOver(); i++) {
+            simulation.step(null);
+        }
+    }
+
+    @Benchmark
+    public void render() {
+        if (++frames == FLUSH_FRAMES) {
+            frames = 0;
+            gameBoard.markAllDirty();
+        }
+        gameBoard.render(simulation.getPacMan(), simulation.getGhosts());
+    }
+
+    @Benchmark
+    public void renderFull() {
+        gameBoard.markAllDirty();
+        gameBoard.render(simulation.getPacMan(), simulation.getGhosts());
+    }
+}
@@ -0,0 +1,52 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One game tick: the work GameController.update() hands to Simulation.step(),
+ * with Pac-Man wandering at random. The game restarts from a snapshot when it ends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+    @Param({"0", "1", "2", "3"})
+    public int mapIndex;
+
+    private Simulation simulation;
+    private GameSnapshot start;
+    private GameRandom inputRandom;
+    private InputPolicy policy;
+
+    @Setup
+    public void setup() {
+        simulation = new Simulation(mapIndex, 1, 42);
+        start = new GameSnapshot();
+        start.capture(simulation);
+        inputRandom = new GameRandom(7);
+        policy = InputPolicy.random(0.05);
+    }
+
+    @Benchmark
+    public int step() {
+        if (simulation.isGameOver()) {
+            start.restore(simulation);
+        }
+        return simulation.step(policy.nextInput(simulation, inputRandom));
+    }
+}
@@ -0,0 +1,61 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The two halves of SoftwareRenderer.present(): capture() is all the FX thread does per frame,
+ * rasterize() is the worker's share. Swapping the buffers needs a running FX toolkit, so it is left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SoftwareRenderBenchmark {
+
+    @Param({"1", "3"})
+    public int scale;
+
+    private SoftwareRenderer renderer;
+    private Simulation simulation;
+
+    @Setup
+    public void setup() {
+        Maze maze = new Maze(0);
+        simulation = new Simulation(maze, 1, 42);
+        for (int i = 0; i < 400 && !simulation.isGameOver(); i++) {
+            simulation.step(null);
+        }
+        renderer = new SoftwareRenderer(maze, Color.YELLOW, scale);
+        renderer.capture(simulation, 0.5, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+    }
+
+    @Benchmark
+    public void capture() {
+        renderer.capture(simulation, 0.5, 0);
+    }
+
+    @Benchmark
+    public void rasterize() {
+        renderer.rasterize(0);
+    }
+}
@@ -0,0 +1,115 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Synthesis of each sound effect, as done once at startup by SoundManager,
+ * the AudioMixer's per-chunk mixing with four overlapping sounds, and mixing while a burst
+ * of chomps arrives every chunk, which the voice rules keep to a single voice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoundBenchmark {
+
+    private SoundManager soundManager;
+    private AudioMixer mixer;
+    private AudioMixer.Sound[] mixedSounds;
+    private AudioMixer.Sound chomp;
+
+    @Setup
+    public void setup() {
+        soundManager = SoundManager.getInstance();
+        // Never started, so no audio line is opened; mixChunk() is driven directly
+        mixer = new AudioMixer();
+        mixedSounds = new AudioMixer.Sound[] {
+            SoundManager.voiceRules(SoundManager.CHOMP, soundManager.generateChompSound()),
+            SoundManager.voiceRules(SoundManager.EAT_GHOST, soundManager.generateEatGhostSound()),
+            SoundManager.voiceRules(SoundManager.DEATH, soundManager.generateDeathSound()),
+            SoundManager.voiceRules(SoundManager.FRIGHTENED, soundManager.generateFrightenedSound())
+        };
+        chomp = mixedSounds[0];
+    }
+
+    @Benchmark
+    public void mixFourVoices() {
+        if (mixer.activeVoices() == 0) {
+            for (AudioMixer.Sound sound : mixedSounds) {
+                mixer.startVoice(sound);
+            }
+        }
+        mixer.mixChunk();
+    }
+
+    @Benchmark
+    public void mixChompBurst() {
+        // As in fast-forward: many chomps per chunk, each restarting the one chomp voice
+        for (int i = 0; i < 32; i++) {
+            mixer.startVoice(chomp);
+        }
+        mixer.mixChunk();
+    }
+
+    @Benchmark
+    public byte[] chomp() {
+        return soundManager.generateChompSound();
+    }
+
+    @Benchmark
+    public byte[] powerPellet() {
+        return soundManager.generatePowerPelletSound();
+    }
+
+    @Benchmark
+    public byte[] eatGhost() {
+        return soundManager.generateEatGhostSound();
+    }
+
+    @Benchmark
+    public byte[] death() {
+        return soundManager.generateDeathSound();
+    }
+
+    @Benchmark
+    public byte[] gameStart() {
+        return soundManager.generateGameStartSound();
+    }
+
+    @Benchmark
+    public byte[] levelComplete() {
+        return soundManager.generateLevelCompleteSound();
+    }
+
+    @Benchmark
+    public byte[] extraLife() {
+        return soundManager.generateExtraLifeSound();
+    }
+
+    @Benchmark
+    public byte[] frightened() {
+        return soundManager.generateFrightenedSound();
+    }
+
+    @Benchmark
+    public byte[] menuSelect() {
+        return soundManager.generateMenuSelectSound();
+    }
+
+    @Benchmark
+    public byte[] menuNavigate() {
+        return soundManager.generateMenuNavigateSound();
+    }
+}
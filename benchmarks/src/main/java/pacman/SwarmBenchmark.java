@@ -0,0 +1,70 @@
+package pacman;
+
+import java.util.concurrent.TimeUnit;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The many-ghost mode: one game tick with the swarm out of the house, and drawing the frame
+ * with SoftwareRenderer. A tick has to stay well under the 16.7 ms of a 60 Hz frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SwarmBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int ghosts;
+
+    private Simulation simulation;
+    private GameSnapshot start;
+    private SoftwareRenderer renderer;
+
+    @Setup
+    public void setup() {
+        Maze maze = new Maze(0);
+        simulation = new Simulation(maze, 0, 42);
+        simulation.setSwarmSize(ghosts);
+        start = new GameSnapshot();
+        start.capture(simulation);
+        // Let most of the swarm out of the house
+        for (int i = 0; i < 600 && !simulation.isGameOver(); i++) {
+            simulation.step(null);
+        }
+        renderer = new SoftwareRenderer(maze, Color.YELLOW);
+        renderer.capture(simulation, 0.5, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+    }
+
+    @Benchmark
+    public int step() {
+        if (simulation.isGameOver()) {
+            // The swarm is not in the snapshot and just keeps roaming
+            start.restore(simulation);
+        }
+        return simulation.step(null);
+    }
+
+    @Benchmark
+    public void rasterize() {
+        renderer.rasterize(0);
+    }
+}
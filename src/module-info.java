@@ -3,6 +3,7 @@ module pacman {
     requires transitive javafx.graphics;
     requires transitive javafx.base;
     requires java.desktop;
+    requires java.management;
     
     opens pacman to javafx.graphics, javafx.base, javafx.controls;
     exports pacman;
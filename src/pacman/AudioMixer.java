@@ -0,0 +1,371 @@
+package pacman;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays any number of overlapping sounds through a single audio line kept open for the whole game.
+ * One daemon thread mixes the active voices, 8-bit signed mono PCM as cached by SoundManager,
+ * into 16-bit chunks and writes them to the line. The line's buffer holds only a few chunks,
+ * so a sound starts within a few milliseconds and the latency stays the same all game.
+ *
+ * play() can be called from any thread and never blocks: requests go through a bounded queue,
+ * and if the mixer falls that far behind the extra requests are dropped.
+ *
+ * The number of voices is fixed, and each Sound says how many of them it may use at once and
+ * what happens when it is played again: a retriggered sound restarts its oldest voice instead
+ * of stacking another one. When every voice is busy a sound takes over the voice of a lower
+ * priority sound, or is dropped. So mixing costs the same however fast sounds are requested.
+ *
+ * Besides the voices there is one background loop, the siren or the frightened warble. It has no
+ * buffer: it is synthesized a chunk at a time, so it can play for any length and change pitch
+ * smoothly. Switching loops fades the old one out over a few milliseconds before the new one starts.
+ */
+public class AudioMixer {
+
+    public static final float SAMPLE_RATE = 44100;
+    // Frames mixed per write; 256 frames is 5.8 ms
+    private static final int CHUNK_FRAMES = 256;
+    private static final int LINE_CHUNKS = 4;
+    private static final int MAX_VOICES = 8;
+    private static final int QUEUE_SIZE = 64;
+    private static final long STOP_TIMEOUT_MILLIS = 200;
+    
+    public static final int LOOP_NONE = 0;
+    public static final int LOOP_SIREN = 1;
+    public static final int LOOP_FRIGHTENED = 2;
+    // Loop fade in or out, per sample: about 6 ms
+    private static final float LOOP_RAMP = 1f / 256;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final ArrayBlockingQueue<Sound> requests = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private volatile float volume = 0.7f;
+    private volatile boolean running = false;
+    private volatile boolean available = true;
+    // Set by stop(): the mixer never starts again, so late sounds during exit stay silent
+    private volatile boolean shutDown = false;
+    private volatile int loop = LOOP_NONE;
+    private volatile float sirenLevel = 0;
+    private Thread thread;
+    // Queued by setLoop() to end the idle wait; never becomes a voice
+    private static final Sound WAKE = new Sound(new byte[0], 0, 1, false);
+
+    // Mixer thread only
+    private final Sound[] voiceSound = new Sound[MAX_VOICES];
+    private final int[] voicePosition = new int[MAX_VOICES];
+    private final long[] voiceStarted = new long[MAX_VOICES];
+    private long voicesStarted = 0;
+    private int loopPlaying = LOOP_NONE;
+    private float loopEnvelope = 0;
+    private double loopPhase = 0;
+    private double wobblePhase = 0;
+    private final int[] mix = new int[CHUNK_FRAMES];
+    private final byte[] output = new byte[CHUNK_FRAMES * 2];
+
+    /**
+     * A playable sound: 8-bit signed mono PCM at SAMPLE_RATE and its voice rules
+     */
+    public static class Sound {
+        private final byte[] pcm;
+        private final int priority;
+        private final int maxVoices;
+        private final boolean retrigger;
+
+        /**
+         * @param priority sounds may take over voices of sounds with a lower priority
+         * @param maxVoices how many copies of this sound may play at once
+         * @param retrigger when maxVoices copies are playing, restart the oldest instead of dropping the new one
+         */
+        public Sound(byte[] pcm, int priority, int maxVoices, boolean retrigger) {
+            this.pcm = pcm;
+            this.priority = priority;
+            this.maxVoices = Math.max(1, maxVoices);
+            this.retrigger = retrigger;
+        }
+
+        public byte[] getPcm() {
+            return pcm;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getMaxVoices() {
+            return maxVoices;
+        }
+
+        public boolean isRetrigger() {
+            return retrigger;
+        }
+    }
+
+    /**
+     * A silent mixer; the line opens with start() or the first sound played
+     */
+    public AudioMixer() {
+    }
+
+    /**
+     * Open the line and start mixing; does nothing if already started or once stopped
+     */
+    public synchronized void start() {
+        if (running || !available || shutDown) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "audio-mixer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop mixing and close the line for good; sounds still playing are cut off and later ones ignored.
+     * Waits briefly for the mixer thread, so the line is closed when this returns.
+     */
+    public synchronized void stop() {
+        shutDown = true;
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Start playing a sound, subject to its voice rules
+     */
+    public void play(Sound sound) {
+        if (!available || shutDown) {
+            return;
+        }
+        if (!running) {
+            start();
+        }
+        requests.offer(sound);
+    }
+
+    /**
+     * Switch the background loop: LOOP_NONE, LOOP_SIREN or LOOP_FRIGHTENED. Cheap enough to call every frame.
+     */
+    public void setLoop(int loop) {
+        if (loop == this.loop || !available || shutDown) {
+            return;
+        }
+        this.loop = loop;
+        if (loop != LOOP_NONE) {
+            if (!running) {
+                start();
+            }
+            requests.offer(WAKE);
+        }
+    }
+
+    /**
+     * Siren pitch, from 0 at the start of a level to 1 when the last dot is eaten
+     */
+    public void setSirenLevel(float level) {
+        sirenLevel = Math.max(0, Math.min(1, level));
+    }
+
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+    /**
+     * False once the audio line could not be opened, e.g. on a machine without a sound device
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    private void run() {
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        SourceDataLine line;
+        try {
+            line = (SourceDataLine) AudioSystem.getLine(new DataLine.Info(SourceDataLine.class, format));
+            line.open(format, output.length * LINE_CHUNKS);
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            // No audio device: stay silent, as the game always did
+            available = false;
+            running = false;
+            requests.clear();
+            return;
+        }
+        line.start();
+
+        try {
+            while (running) {
+                if (activeVoices() == 0 && loopPlaying == LOOP_NONE && loop == LOOP_NONE) {
+                    // Nothing to play: wait for a sound rather than feeding the line silence
+                    Sound sound = requests.poll(100, TimeUnit.MILLISECONDS);
+                    if (sound == null) {
+                        continue;
+                    }
+                    startVoice(sound);
+                }
+                for (Sound sound = requests.poll(); sound != null; sound = requests.poll()) {
+                    startVoice(sound);
+                }
+                mixChunk();
+                // Blocks while the line buffer is full, which paces the loop
+                line.write(output, 0, output.length);
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } finally {
+            line.stop();
+            line.close();
+        }
+    }
+
+    int activeVoices() {
+        int count = 0;
+        for (int i = 0; i < MAX_VOICES; i++) {
+            if (voiceSound[i] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void startVoice(Sound sound) {
+        if (sound == WAKE) {
+            return;
+        }
+        // Already at its polyphony limit: restart the oldest copy, or drop the new one
+        int copies = 0;
+        int oldestCopy = -1;
+        for (int i = 0; i < MAX_VOICES; i++) {
+            if (voiceSound[i] == sound) {
+                copies++;
+                if (oldestCopy < 0 || voiceStarted[i] < voiceStarted[oldestCopy]) {
+                    oldestCopy = i;
+                }
+            }
+        }
+        if (copies >= sound.maxVoices) {
+            if (sound.retrigger) {
+                assignVoice(oldestCopy, sound);
+            }
+            return;
+        }
+
+        // A free voice, else the lowest priority one closest to its end if it ranks below this sound
+        int victim = -1;
+        for (int i = 0; i < MAX_VOICES; i++) {
+            if (voiceSound[i] == null) {
+                assignVoice(i, sound);
+                return;
+            }
+            if (victim < 0 || voiceSound[i].priority < voiceSound[victim].priority
+                    || (voiceSound[i].priority == voiceSound[victim].priority
+                        && remaining(i) < remaining(victim))) {
+                victim = i;
+            }
+        }
+        if (voiceSound[victim].priority < sound.priority) {
+            assignVoice(victim, sound);
+        }
+    }
+
+    private void assignVoice(int voice, Sound sound) {
+        voiceSound[voice] = sound;
+        voicePosition[voice] = 0;
+        voiceStarted[voice] = voicesStarted++;
+    }
+
+    private int remaining(int voice) {
+        return voiceSound[voice].pcm.length - voicePosition[voice];
+    }
+
+    void mixChunk() {
+        Arrays.fill(mix, 0);
+        for (int v = 0; v < MAX_VOICES; v++) {
+            if (voiceSound[v] == null) {
+                continue;
+            }
+            byte[] data = voiceSound[v].pcm;
+            int position = voicePosition[v];
+            int frames = Math.min(CHUNK_FRAMES, data.length - position);
+            for (int i = 0; i < frames; i++) {
+                mix[i] += data[position + i];
+            }
+            voicePosition[v] = position + frames;
+            if (voicePosition[v] >= data.length) {
+                voiceSound[v] = null;
+            }
+        }
+
+        mixLoop();
+
+        // 8-bit samples scaled to 16 bits, then the volume, clipped to the 16-bit range
+        float gain = volume * 256;
+        for (int i = 0; i < CHUNK_FRAMES; i++) {
+            int sample = Math.round(mix[i] * gain);
+            sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+            output[i * 2] = (byte) sample;
+            output[i * 2 + 1] = (byte) (sample >> 8);
+        }
+    }
+
+    /**
+     * Add the background loop to the mix, continuing its phase from the last chunk
+     */
+    private void mixLoop() {
+        int target = loop;
+        if (loopPlaying == LOOP_NONE && target == LOOP_NONE) {
+            return;
+        }
+        float level = sirenLevel;
+        for (int i = 0; i < CHUNK_FRAMES; i++) {
+            if (loopPlaying != target) {
+                // Fade out what is playing, then start the new loop from silence
+                loopEnvelope -= LOOP_RAMP;
+                if (loopEnvelope <= 0) {
+                    loopEnvelope = 0;
+                    loopPlaying = target;
+                }
+            } else if (loopEnvelope < 1) {
+                loopEnvelope = Math.min(1, loopEnvelope + LOOP_RAMP);
+            }
+            if (loopPlaying == LOOP_NONE) {
+                continue;
+            }
+
+            double freq;
+            double amplitude;
+            if (loopPlaying == LOOP_SIREN) {
+                // Rising and falling wail; faster and higher as the dots run out
+                wobblePhase += TWO_PI * (2.5 + 2.5 * level) / SAMPLE_RATE;
+                double base = 350 + 250 * level;
+                freq = base + base * 0.3 * Math.sin(wobblePhase);
+                amplitude = 24;
+            } else {
+                // Same nervous wobble as SoundManager's frightened sound
+                wobblePhase += 40.0 / SAMPLE_RATE;
+                freq = 150 + 50 * Math.sin(wobblePhase);
+                amplitude = 42;
+            }
+            loopPhase += TWO_PI * freq / SAMPLE_RATE;
+            if (loopPhase > TWO_PI) {
+                loopPhase -= TWO_PI;
+            }
+            if (wobblePhase > TWO_PI) {
+                wobblePhase -= TWO_PI;
+            }
+            mix[i] += (int) Math.round(Math.sin(loopPhase) * amplitude * loopEnvelope);
+        }
+    }
+}
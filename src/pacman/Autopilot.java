@@ -0,0 +1,348 @@
+package pacman;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Computer player for attract mode, soak tests and difficulty checks. Whenever Pac-Man reaches
+ * a tile it searches for a move within a fixed time budget, 5 ms by default: it plays short
+ * games ahead from a snapshot of the current state, each starting with one of the moves open to
+ * Pac-Man and then wandering, mostly towards the dots, and takes the move whose games scored
+ * best. Moves are picked for playouts by UCB1, so the promising ones get most of the time.
+ * As an InputPolicy it also drives BatchSimulator games; the budget is wall-clock time, so such
+ * a batch should leave the autopilot some cores.
+ *
+ * Playouts run on the calling thread and on a pool of worker threads, each on its own
+ * Simulation restored from the snapshot, so the game being played is never touched. Every
+ * thread checks the clock before each playout, which takes tens of microseconds, and the caller
+ * doesn't wait for late workers, so a decision never overruns its budget by a millisecond.
+ *
+ * How many playouts fit in the budget depends on the machine, so games played by the autopilot
+ * can't be reproduced from their seed; a recording of their inputs replays like any other.
+ * Swarm ghosts are not part of snapshots, so the autopilot doesn't see them.
+ */
+public class Autopilot implements InputPolicy {
+
+    public static final long DEFAULT_BUDGET_NANOS = 5_000_000;
+
+    // Ticks a playout looks ahead, 1.5 s of play
+    private static final int HORIZON = 90;
+    private static final int DEATH_PENALTY = 5000;
+    private static final int LEVEL_BONUS = 1000;
+    // Points taken off per tile between Pac-Man and the nearest dot where a playout ends
+    private static final int DOT_DISTANCE_COST = 5;
+    // UCB1 exploration weight, in points
+    private static final double EXPLORATION = 500;
+    // Chance that a playout turns towards the nearest dot at a junction rather than at random
+    private static final double GREEDY_CHANCE = 0.75;
+    // Points turning back has to win by, so playout noise doesn't make Pac-Man dither on the spot
+    private static final int REVERSE_MARGIN = 50;
+
+    private final long budgetNanos;
+    private final int workerCount;
+    private final ExecutorService workers;
+    private final ThreadLocal<Playout> playouts = ThreadLocal.withInitial(Playout::new);
+
+    /**
+     * Default budget, searching on every core
+     */
+    public Autopilot() {
+        this(DEFAULT_BUDGET_NANOS, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * @param budgetNanos time a decision may take
+     * @param workerCount threads searching next to the caller, 0 to search on the caller only
+     */
+    public Autopilot(long budgetNanos, int workerCount) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Time budget must be positive: " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+        this.workerCount = Math.max(0, workerCount);
+        if (this.workerCount == 0) {
+            workers = null;
+        } else {
+            workers = Executors.newFixedThreadPool(this.workerCount, runnable -> {
+                Thread thread = new Thread(runnable, "autopilot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Direction to request on the next tick: a new decision when Pac-Man is on a tile or stuck,
+     * otherwise null to keep the last one. Safe to call for several games at once.
+     */
+    public Direction nextInput(Simulation simulation) {
+        return needsDecision(simulation) ? decide(simulation) : null;
+    }
+
+    /**
+     * Whether nextInput() would search on this tick: Pac-Man is on a tile or stuck
+     */
+    public boolean needsDecision(Simulation simulation) {
+        PacMan pacMan = simulation.getPacMan();
+        boolean onTile = pacMan.getX() == pacMan.getTileX() * Maze.TILE_SIZE
+                && pacMan.getY() == pacMan.getTileY() * Maze.TILE_SIZE;
+        return onTile || !pacMan.isMoving();
+    }
+
+    /**
+     * For BatchSimulator; the search has its own randomness, so the per-game random is not used
+     */
+    @Override
+    public Direction nextInput(Simulation simulation, GameRandom random) {
+        return nextInput(simulation);
+    }
+
+    /**
+     * Search for the best move from the current state, taking up to the time budget.
+     * Null if Pac-Man can't move or no playout finished in time.
+     */
+    public Direction decide(Simulation simulation) {
+        long deadline = System.nanoTime() + budgetNanos;
+        PacMan pacMan = simulation.getPacMan();
+        if (simulation.isGameOver() || !pacMan.isAlive()) {
+            return null;
+        }
+        NavGraph nav = simulation.getMaze().getNavGraph();
+        int exits = nav.getExits(NavGraph.cellOf(pacMan.getTileX(), pacMan.getTileY()), false);
+        if (Integer.bitCount(exits) < 2) {
+            // Nothing to choose between
+            return exits == 0 ? null : Direction.fromOrdinal(Integer.numberOfTrailingZeros(exits));
+        }
+
+        Search search = new Search(simulation, exits, deadline);
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(search);
+        }
+        search.run();
+        return search.getBest();
+    }
+
+    /**
+     * Stop the worker threads; the autopilot can't be used afterwards
+     */
+    public void dispose() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public long getBudgetNanos() {
+        return budgetNanos;
+    }
+
+    /**
+     * One decision: the state searched from and the playout results so far, shared by all threads
+     */
+    private final class Search implements Runnable {
+
+        final GameSnapshot root = new GameSnapshot();
+        final int difficulty;
+        final double ghostSpeedMultiplier;
+        final long deadline;
+        // Direction ordinal of each move tried, and the one turning back, -1 if standing still
+        final int[] moves;
+        final int reverse;
+        // Path length from each cell to the nearest dot at the start of the search
+        final short[] dotDistances = new short[NavGraph.CELLS];
+        final AtomicIntegerArray visits;
+        final AtomicLongArray totals;
+
+        Search(Simulation simulation, int exits, long deadline) {
+            root.capture(simulation);
+            difficulty = simulation.getDifficulty();
+            ghostSpeedMultiplier = simulation.getGhostSpeedMultiplier();
+            this.deadline = deadline;
+            Direction heading = simulation.getPacMan().getDirection();
+            reverse = heading == Direction.NONE ? -1 : heading.getOpposite().ordinal();
+            moves = new int[Integer.bitCount(exits)];
+            for (int i = 0; exits != 0; exits &= exits - 1) {
+                moves[i++] = Integer.numberOfTrailingZeros(exits);
+            }
+            visits = new AtomicIntegerArray(moves.length);
+            totals = new AtomicLongArray(moves.length);
+            findDots(simulation.getMaze());
+        }
+
+        // Breadth-first search from every dot and power pellet at once
+        private void findDots(Maze maze) {
+            NavGraph nav = maze.getNavGraph();
+            int[] queue = new int[NavGraph.CELLS];
+            int tail = 0;
+            Arrays.fill(dotDistances, (short) NavGraph.UNREACHABLE);
+            for (int y = 0; y < Maze.HEIGHT; y++) {
+                for (int x = 0; x < Maze.WIDTH; x++) {
+                    if (maze.isDot(x, y) || maze.isPowerPellet(x, y)) {
+                        dotDistances[NavGraph.cellOf(x, y)] = 0;
+                        queue[tail++] = NavGraph.cellOf(x, y);
+                    }
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int cell = queue[head];
+                for (int mask = nav.getExits(cell, false); mask != 0; mask &= mask - 1) {
+                    int next = nav.getNeighbor(cell, Integer.numberOfTrailingZeros(mask));
+                    if (next != NavGraph.NO_CELL && dotDistances[next] == NavGraph.UNREACHABLE) {
+                        dotDistances[next] = (short) (dotDistances[cell] + 1);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Playout playout = playouts.get();
+            playout.prepare(this);
+            while (System.nanoTime() < deadline) {
+                int move = select();
+                long value = playout.play(moves[move]);
+                totals.addAndGet(move, value);
+                visits.incrementAndGet(move);
+            }
+        }
+
+        // UCB1: every move once, then the best mean plus a bonus for moves tried less often
+        private int select() {
+            int total = 0;
+            for (int i = 0; i < moves.length; i++) {
+                int n = visits.get(i);
+                if (n == 0) {
+                    return i;
+                }
+                total += n;
+            }
+            double logTotal = Math.log(total);
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < moves.length; i++) {
+                int n = visits.get(i);
+                double score = (double) totals.get(i) / n + EXPLORATION * Math.sqrt(logTotal / n);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        Direction getBest() {
+            Direction best = null;
+            double bestMean = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < moves.length; i++) {
+                int n = visits.get(i);
+                if (n == 0) {
+                    continue;
+                }
+                double mean = (double) totals.get(i) / n - (moves[i] == reverse ? REVERSE_MARGIN : 0);
+                if (mean > bestMean) {
+                    bestMean = mean;
+                    best = Direction.fromOrdinal(moves[i]);
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A thread's own simulation to play ahead on, reused from decision to decision
+     */
+    private static final class Playout {
+
+        private final GameSnapshot start = new GameSnapshot();
+        private final GameRandom random = new GameRandom(System.nanoTime() ^ Thread.currentThread().getId());
+        private Simulation simulation;
+        private short[] dotDistances;
+
+        void prepare(Search search) {
+            if (simulation == null || simulation.getDifficulty() != search.difficulty
+                    || simulation.getGhostSpeedMultiplier() != search.ghostSpeedMultiplier) {
+                // The map comes with the snapshot
+                simulation = new Simulation(new Maze(), search.difficulty, 0, search.ghostSpeedMultiplier);
+            }
+            start.copyFrom(search.root);
+            dotDistances = search.dotDistances;
+        }
+
+        /**
+         * Play one game ahead starting with the given move, then wandering without turning back,
+         * mostly towards the dots; its value is the points scored, less penalties for dying or
+         * ending far from the dots
+         */
+        long play(int move) {
+            start.restore(simulation);
+            PacMan pacMan = simulation.getPacMan();
+            NavGraph nav = simulation.getMaze().getNavGraph();
+            int startScore = simulation.getScore();
+            int cell = NavGraph.cellOf(pacMan.getTileX(), pacMan.getTileY());
+            Direction input = Direction.fromOrdinal(move);
+
+            for (int tick = 0; tick < HORIZON; tick++) {
+                int events = simulation.step(input);
+                input = null;
+                if ((events & Simulation.EVENT_PACMAN_DIED) != 0) {
+                    return simulation.getScore() - startScore - DEATH_PENALTY;
+                }
+                if ((events & Simulation.EVENT_LEVEL_COMPLETE) != 0) {
+                    return simulation.getScore() - startScore + LEVEL_BONUS;
+                }
+                int now = NavGraph.cellOf(pacMan.getTileX(), pacMan.getTileY());
+                if (now != cell) {
+                    cell = now;
+                    input = wander(nav, cell, pacMan.getDirection());
+                }
+            }
+            return simulation.getScore() - startScore - DOT_DISTANCE_COST * nearestDot(nav, cell);
+        }
+
+        private Direction wander(NavGraph nav, int cell, Direction heading) {
+            int exits = nav.getExits(cell, false);
+            if (heading != Direction.NONE) {
+                exits &= ~(1 << heading.getOpposite().ordinal());
+            }
+            int choices = Integer.bitCount(exits);
+            if (choices == 0) {
+                return heading.getOpposite();
+            }
+            if (choices > 1 && random.nextDouble() < GREEDY_CHANCE) {
+                int best = Integer.numberOfTrailingZeros(exits);
+                int bestDistance = Integer.MAX_VALUE;
+                for (int mask = exits; mask != 0; mask &= mask - 1) {
+                    int d = Integer.numberOfTrailingZeros(mask);
+                    int next = nav.getNeighbor(cell, d);
+                    int distance = next == NavGraph.NO_CELL ? NavGraph.UNREACHABLE : dotDistances[next];
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = d;
+                    }
+                }
+                return Direction.fromOrdinal(best);
+            }
+            for (int skip = random.nextInt(choices); skip > 0; skip--) {
+                exits &= exits - 1;
+            }
+            return Direction.fromOrdinal(Integer.numberOfTrailingZeros(exits));
+        }
+
+        // Path length to the closest dot or power pellet
+        private int nearestDot(NavGraph nav, int cell) {
+            Maze maze = simulation.getMaze();
+            int nearest = NavGraph.UNREACHABLE;
+            for (int y = 0; y < Maze.HEIGHT; y++) {
+                for (int x = 0; x < Maze.WIDTH; x++) {
+                    if (maze.isDot(x, y) || maze.isPowerPellet(x, y)) {
+                        nearest = Math.min(nearest, nav.getDistance(cell, NavGraph.cellOf(x, y)));
+                    }
+                }
+            }
+            return nearest == NavGraph.UNREACHABLE ? 0 : nearest;
+        }
+    }
+}
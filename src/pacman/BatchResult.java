@@ -0,0 +1,161 @@
+package pacman;
+
+/**
+ * Aggregate statistics of a BatchSimulator run: score distribution, levels reached,
+ * deaths per level and simulation throughput. Each worker fills its own instance
+ * and the instances are merged at the end, so recording needs no locking.
+ */
+public class BatchResult {
+
+    // Scores are bucketed; the last bucket collects everything above the range
+    public static final int SCORE_BUCKET_SIZE = 250;
+    private static final int SCORE_BUCKETS = 400;
+    private static final int MAX_LEVEL = 64;
+
+    private long games = 0;
+    private long timedOutGames = 0;
+    private long totalTicks = 0;
+    private long scoreSum = 0;
+    private int minScore = Integer.MAX_VALUE;
+    private int maxScore = 0;
+    private final long[] scoreHistogram = new long[SCORE_BUCKETS];
+    private final long[] levelsReached = new long[MAX_LEVEL];
+    private final long[] deathsPerLevel = new long[MAX_LEVEL];
+    private long elapsedNanos = 0;
+
+    /**
+     * An empty result, filled by recording games or merging other results
+     */
+    public BatchResult() {
+    }
+
+    void recordDeath(int level) {
+        deathsPerLevel[Math.min(level, MAX_LEVEL - 1)]++;
+    }
+
+    void recordGame(Simulation simulation, boolean timedOut) {
+        int score = simulation.getScore();
+        games++;
+        if (timedOut) {
+            timedOutGames++;
+        }
+        totalTicks += simulation.getTick();
+        scoreSum += score;
+        minScore = Math.min(minScore, score);
+        maxScore = Math.max(maxScore, score);
+        scoreHistogram[Math.min(score / SCORE_BUCKET_SIZE, SCORE_BUCKETS - 1)]++;
+        levelsReached[Math.min(simulation.getLevel(), MAX_LEVEL - 1)]++;
+    }
+
+    void merge(BatchResult other) {
+        games += other.games;
+        timedOutGames += other.timedOutGames;
+        totalTicks += other.totalTicks;
+        scoreSum += other.scoreSum;
+        minScore = Math.min(minScore, other.minScore);
+        maxScore = Math.max(maxScore, other.maxScore);
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            scoreHistogram[i] += other.scoreHistogram[i];
+        }
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            levelsReached[i] += other.levelsReached[i];
+            deathsPerLevel[i] += other.deathsPerLevel[i];
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Games stopped by the tick limit before reaching game over
+     */
+    public long getTimedOutGames() {
+        return timedOutGames;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    public double getMeanScore() {
+        return games == 0 ? 0 : (double) scoreSum / games;
+    }
+
+    public int getMinScore() {
+        return games == 0 ? 0 : minScore;
+    }
+
+    public int getMaxScore() {
+        return maxScore;
+    }
+
+    /**
+     * Score below which the given fraction (0..1) of games ended, at bucket resolution
+     */
+    public int getScorePercentile(double fraction) {
+        long target = (long) Math.ceil(fraction * games);
+        long seen = 0;
+        for (int i = 0; i < SCORE_BUCKETS; i++) {
+            seen += scoreHistogram[i];
+            if (seen >= target && seen > 0) {
+                return Math.min((i + 1) * SCORE_BUCKET_SIZE, maxScore);
+            }
+        }
+        return maxScore;
+    }
+
+    /**
+     * Number of games in each score bucket of SCORE_BUCKET_SIZE points
+     */
+    public long[] getScoreHistogram() {
+        return scoreHistogram.clone();
+    }
+
+    /**
+     * Number of games that ended on the given level
+     */
+    public long getGamesEndingAtLevel(int level) {
+        return levelsReached[Math.min(level, MAX_LEVEL - 1)];
+    }
+
+    public long getDeathsAtLevel(int level) {
+        return deathsPerLevel[Math.min(level, MAX_LEVEL - 1)];
+    }
+
+    public int getHighestLevel() {
+        for (int i = MAX_LEVEL - 1; i > 0; i--) {
+            if (levelsReached[i] > 0) {
+                return i;
+            }
+        }
+        return 1;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getTicksPerSecond() {
+        return elapsedNanos == 0 ? 0 : totalTicks * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d games (%d timed out), %.1f M ticks/s%n",
+                games, timedOutGames, getTicksPerSecond() / 1e6));
+        sb.append(String.format("score: mean %.0f, min %d, p50 %d, p90 %d, p99 %d, max %d%n",
+                getMeanScore(), getMinScore(), getScorePercentile(0.5), getScorePercentile(0.9),
+                getScorePercentile(0.99), maxScore));
+        for (int level = 1; level <= getHighestLevel(); level++) {
+            sb.append(String.format("level %d: %d games ended here, %d deaths%n",
+                    level, getGamesEndingAtLevel(level), getDeathsAtLevel(level)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package pacman;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs many independent headless games in parallel and aggregates their results.
+ * Every game gets its own seed derived from the base seed and its index, so a batch
+ * is reproducible no matter how the games are spread over the worker threads.
+ *
+ * Used to tune gameplay constants such as the ghost speed multiplier, e.g.
+ * java -cp out pacman.BatchSimulator 100000 0.7 1.0 1.3
+ */
+public class BatchSimulator {
+
+    private int games = 1000;
+    private long baseSeed = 0;
+    private int[] mapIndices = {0, 1, 2, 3};
+    private int difficulty = 1;
+    private double ghostSpeedMultiplier = Double.NaN; // NaN = use the difficulty's multiplier
+    private InputPolicy inputPolicy = InputPolicy.random(0.05);
+    private long maxTicksPerGame = 60 * 60 * 30; // 30 minutes of play
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * A batch of 1000 games on every map at Normal difficulty; change it with the setters
+     */
+    public BatchSimulator() {
+    }
+
+    public BatchResult run() {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            BatchResult result = pool.submit(() -> IntStream.range(0, games)
+                    .parallel()
+                    .collect(BatchResult::new, this::runGame, BatchResult::merge))
+                    .get();
+            result.setElapsedNanos(System.nanoTime() - start);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void runGame(BatchResult result, int gameIndex) {
+        long seed = seedFor(gameIndex);
+        int mapIndex = mapIndices[gameIndex % mapIndices.length];
+        double multiplier = Double.isNaN(ghostSpeedMultiplier)
+                ? Simulation.getGhostSpeedMultiplier(difficulty) : ghostSpeedMultiplier;
+
+        Simulation simulation = new Simulation(new Maze(mapIndex), difficulty, seed, multiplier);
+        // Input randomness is kept apart from the game's own so policies don't shift ghost behaviour
+        GameRandom inputRandom = new GameRandom(~seed);
+
+        while (!simulation.isGameOver() && simulation.getTick() < maxTicksPerGame) {
+            int events = simulation.step(inputPolicy.nextInput(simulation, inputRandom));
+            if ((events & Simulation.EVENT_LIFE_LOST) != 0) {
+                result.recordDeath(simulation.getLevel());
+            }
+        }
+        result.recordGame(simulation, !simulation.isGameOver());
+    }
+
+    /**
+     * Seed of the game with the given index in this batch
+     */
+    public long seedFor(int gameIndex) {
+        return baseSeed + gameIndex * 0x9E3779B97F4A7C15L;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setBaseSeed(long baseSeed) {
+        this.baseSeed = baseSeed;
+    }
+
+    /**
+     * Maps to play, assigned to games round-robin
+     */
+    public void setMapIndices(int... mapIndices) {
+        if (mapIndices.length == 0) {
+            throw new IllegalArgumentException("At least one map is required");
+        }
+        this.mapIndices = mapIndices.clone();
+    }
+
+    public void setDifficulty(int difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Override the ghost speed multiplier the difficulty would use (0.7/1.0/1.3)
+     */
+    public void setGhostSpeedMultiplier(double ghostSpeedMultiplier) {
+        this.ghostSpeedMultiplier = ghostSpeedMultiplier;
+    }
+
+    public void setInputPolicy(InputPolicy inputPolicy) {
+        this.inputPolicy = inputPolicy;
+    }
+
+    public void setMaxTicksPerGame(long maxTicksPerGame) {
+        this.maxTicksPerGame = maxTicksPerGame;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Sweep ghost speed multipliers: BatchSimulator [games] [multiplier...]
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        double[] multipliers = {0.7, 1.0, 1.3};
+        if (args.length > 1) {
+            multipliers = new double[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                multipliers[i - 1] = Double.parseDouble(args[i]);
+            }
+        }
+
+        for (double multiplier : multipliers) {
+            BatchSimulator batch = new BatchSimulator();
+            batch.setGames(games);
+            batch.setGhostSpeedMultiplier(multiplier);
+            System.out.println("=== ghost speed x" + multiplier + " ===");
+            System.out.print(batch.run());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package pacman;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid with one bucket per maze tile, listing the entities (small integer ids) on each tile.
+ * Buckets are doubly linked lists threaded through int arrays, so moving an entity to another
+ * tile is constant time and nothing is allocated. The owner keeps the grid current as entities
+ * change tile, which for a ghost is every few ticks, rather than rebuilding it every tick.
+ *
+ * A query only visits the tiles around a point, so its cost depends on how crowded that spot
+ * is rather than on how many entities there are in total.
+ */
+public class CollisionGrid {
+
+    public static final int NONE = -1;
+
+    // First entity in each tile, NONE if empty
+    private final int[] head = new int[NavGraph.CELLS];
+    // Per entity: its tile, NONE if not in the grid, and its neighbors in that tile's list
+    private final int[] cell;
+    private final int[] next;
+    private final int[] previous;
+
+    public CollisionGrid(int capacity) {
+        cell = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Take every entity out of the grid
+     */
+    public void clear() {
+        Arrays.fill(head, NONE);
+        Arrays.fill(cell, NONE);
+    }
+
+    /**
+     * Put an entity (0 to capacity - 1) on a tile, moving it if it is elsewhere; off the board takes it out
+     */
+    public void place(int entity, int tileX, int tileY) {
+        if (tileX < 0 || tileX >= Maze.WIDTH || tileY < 0 || tileY >= Maze.HEIGHT) {
+            remove(entity);
+            return;
+        }
+        int target = NavGraph.cellOf(tileX, tileY);
+        if (cell[entity] == target) {
+            return;
+        }
+        remove(entity);
+        cell[entity] = target;
+        previous[entity] = NONE;
+        next[entity] = head[target];
+        if (head[target] != NONE) {
+            previous[head[target]] = entity;
+        }
+        head[target] = entity;
+    }
+
+    /**
+     * Take an entity out of the grid; does nothing if it isn't in it
+     */
+    public void remove(int entity) {
+        int current = cell[entity];
+        if (current == NONE) {
+            return;
+        }
+        if (previous[entity] == NONE) {
+            head[current] = next[entity];
+        } else {
+            next[previous[entity]] = next[entity];
+        }
+        if (next[entity] != NONE) {
+            previous[next[entity]] = previous[entity];
+        }
+        cell[entity] = NONE;
+    }
+
+    /**
+     * First entity on a tile, NONE if it is empty or off the board; continue with next()
+     */
+    public int first(int tileX, int tileY) {
+        if (tileX < 0 || tileX >= Maze.WIDTH || tileY < 0 || tileY >= Maze.HEIGHT) {
+            return NONE;
+        }
+        return head[NavGraph.cellOf(tileX, tileY)];
+    }
+
+    /**
+     * Entity after this one on the same tile, NONE at the end
+     */
+    public int next(int entity) {
+        return next[entity];
+    }
+}
@@ -10,6 +10,8 @@ public enum Direction {
     RIGHT(1, 0),
     NONE(0, 0);
     
+    private static final Direction[] VALUES = values();
+    
     private final int dx;
     private final int dy;
     
@@ -26,6 +28,13 @@ public enum Direction {
         return dy;
     }
     
+    /**
+     * Inverse of ordinal(), without the array copy values() makes
+     */
+    public static Direction fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+    
     public Direction getOpposite() {
         switch (this) {
             case UP: return DOWN;
@@ -1,189 +1,335 @@
 package pacman;
 
+import java.util.Arrays;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 public class GameBoard extends Canvas {
     
-    public static final int TILE_SIZE = 20;
-    public static final int BOARD_WIDTH = 28;
-    public static final int BOARD_HEIGHT = 31;
+    public static final int TILE_SIZE = Maze.TILE_SIZE;
+    public static final int BOARD_WIDTH = Maze.WIDTH;
+    public static final int BOARD_HEIGHT = Maze.HEIGHT;
     
-    // Maze layout:
-    // 0 = empty (path)
-    // 1 = wall
-    // 2 = dot
-    // 3 = power pellet
-    // 4 = ghost house door
-    // 5 = empty (no dot)
-    private int[][] maze;
-    private int[][] originalMaze;
-    private int currentMapIndex;
+    // Tile state lives in the JavaFX-free Maze; this class only draws it
+    private Maze maze;
     
-    //  maze layout (kept for backwards compatibility)
-    private static final int[][] MAZE_TEMPLATE = MapTemplates.CLASSIC;
+    private Color pacManColor = Color.YELLOW;
     
-    private int dotsRemaining;
-    private int totalDots;
+    // Walls and door drawn once per map; each frame only repaints the tiles that changed
+    // (eaten or restored dots) and the tiles under last frame's sprites
+    private WritableImage mazeLayer;
+    private int layerMapIndex = -1;
+    private final byte[] drawnTiles = new byte[BOARD_WIDTH * BOARD_HEIGHT];
+    private boolean fullRedraw = true;
+    private double[] spriteX = new double[8];
+    private double[] spriteY = new double[8];
+    private int spriteCount = 0;
+    // Above this many sprites (many-ghost mode) the whole board is repainted every frame
+    private static final int MAX_RESTORED_SPRITES = 64;
+    
+    // Pre-rasterized Pac-Man and ghost frames for the current tile size and Pac-Man color
+    private SpriteAtlas atlas;
     
     public GameBoard() {
         this(0); // Default to classic map
     }
     
     public GameBoard(int mapIndex) {
+        this(new Maze(mapIndex));
+    }
+    
+    public GameBoard(Maze maze) {
         super(BOARD_WIDTH * TILE_SIZE, BOARD_HEIGHT * TILE_SIZE);
-        this.currentMapIndex = mapIndex;
-        initMaze();
+        this.maze = maze;
+    }
+    
+    public Maze getMaze() {
+        return maze;
+    }
+    
+    public void setPacManColor(Color color) {
+        this.pacManColor = color;
+        this.atlas = null;
     }
     
     public void initMaze() {
-        int[][] template = MapTemplates.getMap(currentMapIndex);
-        maze = new int[BOARD_HEIGHT][BOARD_WIDTH];
-        originalMaze = new int[BOARD_HEIGHT][BOARD_WIDTH];
-        dotsRemaining = 0;
-        
-        for (int y = 0; y < BOARD_HEIGHT; y++) {
-            for (int x = 0; x < BOARD_WIDTH; x++) {
-                maze[y][x] = template[y][x];
-                originalMaze[y][x] = template[y][x];
-                if (maze[y][x] == 2 || maze[y][x] == 3) {
-                    dotsRemaining++;
-                }
-            }
-        }
-        totalDots = dotsRemaining;
+        maze.init();
     }
     
     public void setMapIndex(int mapIndex) {
-        this.currentMapIndex = mapIndex;
-        initMaze();
+        maze.setMapIndex(mapIndex);
     }
     
     public int getMapIndex() {
-        return currentMapIndex;
+        return maze.getMapIndex();
     }
     
     public void resetMaze() {
-        dotsRemaining = 0;
-        for (int y = 0; y < BOARD_HEIGHT; y++) {
-            for (int x = 0; x < BOARD_WIDTH; x++) {
-                maze[y][x] = originalMaze[y][x];
-                if (maze[y][x] == 2 || maze[y][x] == 3) {
-                    dotsRemaining++;
-                }
-            }
-        }
+        maze.reset();
     }
     
     public void render(PacMan pacMan, Ghost[] ghosts) {
+        render(pacMan, ghosts, 1.0);
+    }
+    
+    /**
+     * Draw the board with the sprites interpolated between their previous and current tick
+     * @param alpha how far the display is between the two ticks, 0..1
+     */
+    public void render(PacMan pacMan, Ghost[] ghosts, double alpha) {
+        render(pacMan, ghosts, null, alpha);
+    }
+    
+    /**
+     * Draw the board with the extra ghosts of the many-ghost mode too, if swarm is not null
+     */
+    public void render(PacMan pacMan, Ghost[] ghosts, GhostSwarm swarm, double alpha) {
         GraphicsContext gc = getGraphicsContext2D();
         
-        // Clear the canvas
-        gc.setFill(Color.BLACK);
-        gc.fillRect(0, 0, getWidth(), getHeight());
+        if (mazeLayer == null || layerMapIndex != maze.getMapIndex()) {
+            mazeLayer = createMazeLayer(maze);
+            layerMapIndex = maze.getMapIndex();
+            fullRedraw = true;
+        }
         
-        // Draw maze
-        for (int y = 0; y < BOARD_HEIGHT; y++) {
-            for (int x = 0; x < BOARD_WIDTH; x++) {
-                int tile = maze[y][x];
-                double px = x * TILE_SIZE;
-                double py = y * TILE_SIZE;
-                
-                switch (tile) {
-                    case 1: // Wall
-                        gc.setFill(Color.BLUE);
-                        gc.fillRect(px + 1, py + 1, TILE_SIZE - 2, TILE_SIZE - 2);
-                        gc.setStroke(Color.DARKBLUE);
-                        gc.strokeRect(px + 1, py + 1, TILE_SIZE - 2, TILE_SIZE - 2);
-                        break;
-                    case 2: // Dot
-                        gc.setFill(Color.WHITE);
-                        gc.fillOval(px + TILE_SIZE/2 - 2, py + TILE_SIZE/2 - 2, 4, 4);
-                        break;
-                    case 3: // Power pellet
-                        gc.setFill(Color.WHITE);
-                        gc.fillOval(px + TILE_SIZE/2 - 5, py + TILE_SIZE/2 - 5, 10, 10);
-                        break;
-                    case 4: // Ghost house door
-                        gc.setFill(Color.PINK);
-                        gc.fillRect(px, py + TILE_SIZE/2 - 2, TILE_SIZE, 4);
-                        break;
+        if (atlas == null) {
+            atlas = SpriteAtlas.forStyle(TILE_SIZE, pacManColor);
+        }
+        
+        byte[] tiles = maze.getTileData();
+        if (spriteCount > MAX_RESTORED_SPRITES) {
+            // Repairing that many sprite areas one by one costs more than repainting everything
+            fullRedraw = true;
+        }
+        if (fullRedraw) {
+            // Covering the whole canvas also lets JavaFX drop the queued draw commands
+            gc.setFill(Color.BLACK);
+            gc.fillRect(0, 0, getWidth(), getHeight());
+            gc.drawImage(mazeLayer, 0, 0);
+            for (int y = 0; y < BOARD_HEIGHT; y++) {
+                for (int x = 0; x < BOARD_WIDTH; x++) {
+                    drawPickup(gc, x, y);
                 }
             }
+            System.arraycopy(tiles, 0, drawnTiles, 0, tiles.length);
+            spriteCount = 0;
+            fullRedraw = false;
+        } else {
+            // Tiles whose dot was eaten or restored since the last frame
+            int from = 0;
+            while (from < tiles.length) {
+                int offset = Arrays.mismatch(tiles, from, tiles.length, drawnTiles, from, tiles.length);
+                if (offset < 0) {
+                    break;
+                }
+                int index = from + offset;
+                drawnTiles[index] = tiles[index];
+                restoreTiles(gc, index % BOARD_WIDTH, index / BOARD_WIDTH, 1, 1);
+                from = index + 1;
+            }
+            
+            // Erase the sprites where they were drawn last frame
+            for (int i = 0; i < spriteCount; i++) {
+                restoreSpriteArea(gc, spriteX[i], spriteY[i]);
+            }
+            spriteCount = 0;
         }
         
         // Draw ghosts
         if (ghosts != null) {
             for (Ghost ghost : ghosts) {
-                ghost.render(gc);
+                double x = ghost.getRenderX(alpha);
+                double y = ghost.getRenderY(alpha);
+                atlas.draw(gc, atlas.getGhostCell(ghost), x, y);
+                rememberSprite(x, y);
+            }
+        }
+        if (swarm != null) {
+            for (int i = 0, count = swarm.getCount(); i < count; i++) {
+                double x = swarm.getRenderX(i, alpha);
+                double y = swarm.getRenderY(i, alpha);
+                atlas.draw(gc, atlas.getGhostCell(swarm, i), x, y);
+                rememberSprite(x, y);
             }
         }
         
         // Draw Pac-Man
         if (pacMan != null) {
-            pacMan.render(gc);
+            double x = pacMan.getRenderX(alpha);
+            double y = pacMan.getRenderY(alpha);
+            atlas.draw(gc, atlas.getPacManCell(pacMan), x, y);
+            rememberSprite(x, y);
         }
     }
     
-    public boolean isWall(int x, int y) {
-        if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
-            // Allow tunnel wrap-around
-            if (y == 14 && (x < 0 || x >= BOARD_WIDTH)) {
-                return false;
-            }
-            return true;
+    /**
+     * Repaint the whole board on the next render instead of only what changed,
+     * e.g. after something else was drawn over the canvas
+     */
+    public void markAllDirty() {
+        fullRedraw = true;
+    }
+    
+    private void rememberSprite(double x, double y) {
+        if (spriteCount == spriteX.length) {
+            spriteX = Arrays.copyOf(spriteX, spriteCount * 2);
+            spriteY = Arrays.copyOf(spriteY, spriteCount * 2);
         }
-        return maze[y][x] == 1;
+        spriteX[spriteCount] = x;
+        spriteY[spriteCount] = y;
+        spriteCount++;
     }
     
-    public boolean isDot(int x, int y) {
-        if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
-            return false;
+    private void restoreSpriteArea(GraphicsContext gc, double x, double y) {
+        // Sprites overhang their tile by up to the atlas padding (ghost skirt, antialiasing)
+        int x0 = (int) Math.floor((x - SpriteAtlas.PADDING) / TILE_SIZE);
+        int y0 = (int) Math.floor((y - SpriteAtlas.PADDING) / TILE_SIZE);
+        int x1 = (int) Math.floor((x + TILE_SIZE + SpriteAtlas.PADDING) / TILE_SIZE);
+        int y1 = (int) Math.floor((y + TILE_SIZE + SpriteAtlas.PADDING) / TILE_SIZE);
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(BOARD_WIDTH - 1, x1);
+        y1 = Math.min(BOARD_HEIGHT - 1, y1);
+        if (x0 <= x1 && y0 <= y1) {
+            restoreTiles(gc, x0, y0, x1 - x0 + 1, y1 - y0 + 1);
         }
-        return maze[y][x] == 2;
     }
     
-    public boolean isPowerPellet(int x, int y) {
-        if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
-            return false;
+    /**
+     * Copy a block of tiles back from the maze layer and draw the dots still on them
+     */
+    private void restoreTiles(GraphicsContext gc, int tileX, int tileY, int columns, int rows) {
+        double px = tileX * TILE_SIZE;
+        double py = tileY * TILE_SIZE;
+        double width = columns * TILE_SIZE;
+        double height = rows * TILE_SIZE;
+        gc.drawImage(mazeLayer, px, py, width, height, px, py, width, height);
+        for (int y = tileY; y < tileY + rows; y++) {
+            for (int x = tileX; x < tileX + columns; x++) {
+                drawPickup(gc, x, y);
+            }
         }
-        return maze[y][x] == 3;
     }
     
-    public void eatDot(int x, int y) {
-        if (x >= 0 && x < BOARD_WIDTH && y >= 0 && y < BOARD_HEIGHT) {
-            if (maze[y][x] == 2 || maze[y][x] == 3) {
-                maze[y][x] = 5;
-                dotsRemaining--;
+    private void drawPickup(GraphicsContext gc, int x, int y) {
+        int tile = maze.getTile(x, y);
+        double px = x * TILE_SIZE;
+        double py = y * TILE_SIZE;
+        
+        switch (tile) {
+            case Maze.DOT:
+                gc.setFill(Color.WHITE);
+                gc.fillOval(px + TILE_SIZE/2 - 2, py + TILE_SIZE/2 - 2, 4, 4);
+                break;
+            case Maze.POWER_PELLET:
+                gc.setFill(Color.WHITE);
+                gc.fillOval(px + TILE_SIZE/2 - 5, py + TILE_SIZE/2 - 5, 10, 10);
+                break;
+        }
+    }
+    
+    /**
+     * Rasterize the parts of the maze that never change during a game (walls and the
+     * ghost-house door) once, so frames only have to copy from it
+     */
+    private static WritableImage createMazeLayer(Maze maze) {
+        int width = BOARD_WIDTH * TILE_SIZE;
+        int height = BOARD_HEIGHT * TILE_SIZE;
+        int[] pixels = rasterizeStaticTiles(maze.getTileData());
+        WritableImage image = new WritableImage(width, height);
+        image.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return image;
+    }
+    
+    /**
+     * Opaque ARGB pixels of the walls and door of a board (tiles indexed y * BOARD_WIDTH + x),
+     * everything else black
+     */
+    static int[] rasterizeStaticTiles(byte[] tiles) {
+        int width = BOARD_WIDTH * TILE_SIZE;
+        int height = BOARD_HEIGHT * TILE_SIZE;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, toArgb(Color.BLACK));
+        int wallFill = toArgb(Color.BLUE);
+        int wallEdge = toArgb(Color.DARKBLUE);
+        int door = toArgb(Color.PINK);
+        
+        for (int y = 0; y < BOARD_HEIGHT; y++) {
+            for (int x = 0; x < BOARD_WIDTH; x++) {
+                int tile = tiles[y * BOARD_WIDTH + x];
+                int px = x * TILE_SIZE;
+                int py = y * TILE_SIZE;
+                
+                if (tile == Maze.WALL) {
+                    // Blue block inset by one pixel, with a dark outline
+                    for (int row = 1; row < TILE_SIZE - 1; row++) {
+                        for (int col = 1; col < TILE_SIZE - 1; col++) {
+                            boolean edge = row == 1 || col == 1 || row == TILE_SIZE - 2 || col == TILE_SIZE - 2;
+                            pixels[(py + row) * width + px + col] = edge ? wallEdge : wallFill;
+                        }
+                    }
+                } else if (tile == Maze.DOOR) {
+                    for (int row = TILE_SIZE/2 - 2; row < TILE_SIZE/2 + 2; row++) {
+                        Arrays.fill(pixels, (py + row) * width + px, (py + row) * width + px + TILE_SIZE, door);
+                    }
+                }
             }
         }
+        
+        return pixels;
+    }
+    
+    private static int toArgb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+    
+    public boolean isWall(int x, int y) {
+        return maze.isWall(x, y);
+    }
+    
+    public boolean isDot(int x, int y) {
+        return maze.isDot(x, y);
+    }
+    
+    public boolean isPowerPellet(int x, int y) {
+        return maze.isPowerPellet(x, y);
+    }
+    
+    public void eatDot(int x, int y) {
+        maze.eatDot(x, y);
     }
     
     public int getDotsRemaining() {
-        return dotsRemaining;
+        return maze.getDotsRemaining();
     }
     
     public int getTotalDots() {
-        return totalDots;
+        return maze.getTotalDots();
     }
     
     public int getTile(int x, int y) {
-        if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
-            return 0;
-        }
-        return maze[y][x];
+        return maze.getTile(x, y);
     }
     
     public boolean canMove(int x, int y) {
-        // Handle tunnel
-        if (y == 14 && (x < 0 || x >= BOARD_WIDTH)) {
-            return true;
-        }
-        if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
-            return false;
+        return maze.canMove(x, y);
+    }
+    
+    public static Color getGhostColor(Ghost.GhostType type) {
+        switch (type) {
+            case BLINKY: return Color.RED;
+            case PINKY: return Color.PINK;
+            case INKY: return Color.CYAN;
+            case CLYDE: return Color.ORANGE;
+            default: return Color.RED;
         }
-        return maze[y][x] != 1;
     }
     
     public void renderGameOver(int score, int level) {
@@ -232,5 +378,8 @@ public class GameBoard extends Canvas {
         // Reset text alignment for other rendering
         gc.setTextAlign(javafx.scene.text.TextAlignment.LEFT);
         gc.setTextBaseline(javafx.geometry.VPos.BASELINE);
+        
+        // The overlay covers everything, so the next frame has to start from scratch
+        fullRedraw = true;
     }
 }
@@ -1,8 +1,11 @@
 package pacman;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
 import javafx.scene.paint.Color;
 
 /**
@@ -12,33 +15,51 @@ public class GameController {
     
     private GameBoard gameBoard;
     private Main mainApp;
-    private PacMan pacMan;
-    private Ghost[] ghosts;
+    private Simulation simulation;
     
     private AnimationTimer gameLoop;
     private boolean running = false;
     private boolean paused = false;
-    private boolean gameOver = false;
     
-    // Game state
-    private int score = 0;
-    private int lives = 3;
-    private int level = 1;
-    private int ghostsEatenCombo = 0;
+    // Direction requested since the last tick, handed to the simulation on the next step
+    private Direction pendingDirection = null;
+    
+    // Every session is recorded; while a replay is playing, keyboard input is ignored
+    private Replay recording;
+    private ReplayPlayer replayPlayer;
+    private Path replayDirectory;
+    
+    // Computer player steering instead of the keyboard (attract mode, soak tests); inputs are still recorded
+    private Autopilot autopilot;
+    // The autopilot searches at most once per pulse; catch-up ticks keep that decision
+    private boolean autopilotSearched = false;
+    
+    // When set, frames are rasterized off the FX thread; the canvas only shows the game over screen
+    private SoftwareRenderer softwareRenderer;
     
     // Game settings
     private int characterIndex = 0;
     private int difficulty = 1; // 0=Easy, 1=Normal, 2=Hard
     private Color pacManColor = Color.YELLOW;
     
-    // Points
-    private static final int DOT_POINTS = 10;
-    private static final int POWER_PELLET_POINTS = 50;
-    private static final int[] GHOST_POINTS = {200, 400, 800, 1600};
-    
-    // Timing
+    // Timing: the simulation advances in fixed ticks, independent of the display refresh rate
     private long lastUpdate = 0;
+    private long accumulator = 0;
     private static final long FRAME_TIME = 16_666_667; // ~60 FPS in nanoseconds
+    private static final int DEFAULT_MAX_CATCH_UP_STEPS = 5;
+    private int maxCatchUpSteps = DEFAULT_MAX_CATCH_UP_STEPS;
+    
+    // Values the HUD labels currently show; they are refreshed once per rendered frame,
+    // and only when a value changed, instead of on every scoring event
+    private int hudScore = -1;
+    private int hudLives = -1;
+    private int hudLevel = -1;
+    
+    // Frame and tick timings, late frames and dropped ticks; shown by the stats overlay
+    private final PerformanceStats stats = new PerformanceStats();
+    private Label statsOverlay;
+    private long lastOverlayUpdate = 0;
+    private static final long OVERLAY_REFRESH = 250_000_000; // 4 times a second
     
     /**
      * Original constructor for backwards compatibility
@@ -57,44 +78,15 @@ public class GameController {
         this.difficulty = difficulty;
         this.pacManColor = MenuScreen.CHARACTER_COLORS[characterIndex];
         
-        // Adjust lives based on difficulty
-        switch (difficulty) {
-            case 0: // Easy
-                lives = 5;
-                break;
-            case 1: // Normal
-                lives = 3;
-                break;
-            case 2: // Hard
-                lives = 2;
-                break;
-        }
-        
         initGame();
     }
     
     private void initGame() {
-        pacMan = new PacMan(gameBoard, pacManColor);
-        ghosts = new Ghost[4];
-        
-        // Adjust ghost speed based on difficulty
-        double ghostSpeedMultiplier = 1.0;
-        switch (difficulty) {
-            case 0: // Easy
-                ghostSpeedMultiplier = 0.7;
-                break;
-            case 1: // Normal
-                ghostSpeedMultiplier = 1.0;
-                break;
-            case 2: // Hard
-                ghostSpeedMultiplier = 1.3;
-                break;
-        }
-        
-        ghosts[0] = new Ghost(Ghost.GhostType.BLINKY, gameBoard, ghostSpeedMultiplier);
-        ghosts[1] = new Ghost(Ghost.GhostType.PINKY, gameBoard, ghostSpeedMultiplier);
-        ghosts[2] = new Ghost(Ghost.GhostType.INKY, gameBoard, ghostSpeedMultiplier);
-        ghosts[3] = new Ghost(Ghost.GhostType.CLYDE, gameBoard, ghostSpeedMultiplier);
+        // Lives and ghost speed are derived from the difficulty by the simulation
+        simulation = new Simulation(gameBoard.getMaze(), difficulty);
+        simulation.setCollisionTimes(stats.getCollisions());
+        gameBoard.setPacManColor(pacManColor);
+        startRecording();
         
         createGameLoop();
     }
@@ -108,21 +100,60 @@ public class GameController {
                     return;
                 }
                 
-                if (now - lastUpdate >= FRAME_TIME) {
-                    if (gameOver) {
-                        renderGameOver();
-                    } else if (!paused) {
-                        update();
-                        render();
+                long elapsed = now - lastUpdate;
+                lastUpdate = now;
+                stats.recordFrame(elapsed);
+                updateStatsOverlay(now);
+                updateLoopSound();
+                
+                if (simulation.isGameOver()) {
+                    accumulator = 0;
+                    renderGameOver();
+                    return;
+                }
+                if (paused) {
+                    // Time spent paused must not be replayed as catch-up ticks
+                    accumulator = 0;
+                    return;
+                }
+                
+                accumulator += elapsed;
+                autopilotSearched = false;
+                int steps = 0;
+                while (accumulator >= FRAME_TIME && steps < maxCatchUpSteps
+                        && !paused && !simulation.isGameOver()) {
+                    long updateStart = System.nanoTime();
+                    update();
+                    stats.getUpdates().record(System.nanoTime() - updateStart);
+                    accumulator -= FRAME_TIME;
+                    steps++;
+                }
+                
+                if (accumulator >= FRAME_TIME) {
+                    if (steps == maxCatchUpSteps) {
+                        // Too far behind (GC pause, window drag...): drop the backlog instead of spiralling
+                        stats.addDroppedTicks(accumulator / FRAME_TIME);
                     }
-                    lastUpdate = now;
+                    accumulator %= FRAME_TIME;
+                }
+                if (steps > 1) {
+                    stats.countLateFrame();
                 }
+                
+                // Draw every display frame, not just after ticks, so sprites move smoothly on
+                // high refresh rate screens: the leftover time says how far into the next tick we are
+                long renderStart = System.nanoTime();
+                render((double) accumulator / FRAME_TIME);
+                stats.getRenders().record(System.nanoTime() - renderStart);
             }
         };
     }
     
     public void startGame() {
         running = true;
+        lastUpdate = 0;
+        accumulator = 0;
+        stats.reset();
         gameLoop.start();
         render();
         SoundManager.getInstance().play(SoundManager.GAME_START);
@@ -131,6 +162,12 @@ public class GameController {
     public void stopGame() {
         running = false;
         gameLoop.stop();
+        SoundManager.getInstance().setLoop(null);
+        setAutopilot(false);
+        archiveRecording();
+        if (softwareRenderer != null) {
+            softwareRenderer.dispose();
+        }
     }
     
     public void togglePause() {
@@ -141,21 +178,14 @@ public class GameController {
     }
     
     public void restartGame() {
-        score = 0;
-        lives = 3;
-        level = 1;
-        gameOver = false;
-        ghostsEatenCombo = 0;
-        
-        gameBoard.initMaze();
-        pacMan.reset();
-        for (Ghost ghost : ghosts) {
-            ghost.reset();
-        }
+        archiveRecording();
+        replayPlayer = null;
         
-        mainApp.updateScore(score);
-        mainApp.updateLives(lives);
-        mainApp.updateLevel(level);
+        // Each new game gets a fresh seed; getSimulation().getSeed() reproduces it
+        simulation.restart(System.nanoTime());
+        pendingDirection = null;
+        startRecording();
+        stats.reset();
         
         if (!running) {
             startGame();
@@ -164,135 +194,103 @@ public class GameController {
     }
     
     private void update() {
-        if (!pacMan.isAlive()) {
-            // Still need to update PacMan for death animation
-            pacMan.update();
-            if (pacMan.isDeathAnimationComplete()) {
-                handleDeath();
-            }
+        if (replayPlayer != null && replayPlayer.isFinished()) {
+            finishReplay();
             return;
         }
-        
-        // Update Pac-Man
-        pacMan.update();
-        
-        // Check for dot eating
-        int px = pacMan.getTileX();
-        int py = pacMan.getTileY();
-        
-        if (gameBoard.isDot(px, py)) {
-            gameBoard.eatDot(px, py);
-            score += DOT_POINTS;
-            mainApp.updateScore(score);
-            SoundManager.getInstance().play(SoundManager.CHOMP);
-        } else if (gameBoard.isPowerPellet(px, py)) {
-            gameBoard.eatDot(px, py);
-            score += POWER_PELLET_POINTS;
-            mainApp.updateScore(score);
-            SoundManager.getInstance().play(SoundManager.POWER_PELLET);
-            activatePowerMode();
+        Direction input;
+        if (replayPlayer != null) {
+            input = replayPlayer.nextInput(simulation.getTick() + 1);
+        } else {
+            input = autopilot != null ? nextAutopilotInput() : pendingDirection;
+            if (input != null && recording != null) {
+                recording.record(simulation.getTick() + 1, input);
+            }
         }
+        pendingDirection = null;
         
-        // Check for level completion
-        if (gameBoard.getDotsRemaining() == 0) {
-            nextLevel();
+        int events = simulation.step(input);
+        if (replayPlayer != null && replayPlayer.isFinished()) {
+            finishReplay();
+        }
+        if (events == 0) {
             return;
         }
         
-        // Update ghosts
-        for (Ghost ghost : ghosts) {
-            ghost.update(pacMan);
+        long soundStart = System.nanoTime();
+        SoundManager sound = SoundManager.getInstance();
+        if ((events & Simulation.EVENT_DOT_EATEN) != 0) {
+            sound.play(SoundManager.CHOMP);
+        }
+        if ((events & Simulation.EVENT_POWER_PELLET) != 0) {
+            sound.play(SoundManager.POWER_PELLET);
+        }
+        if ((events & Simulation.EVENT_GHOST_EATEN) != 0) {
+            sound.play(SoundManager.EAT_GHOST);
+        }
+        if ((events & Simulation.EVENT_PACMAN_DIED) != 0) {
+            sound.play(SoundManager.DEATH);
+        }
+        stats.getSounds().record(System.nanoTime() - soundStart);
+        if ((events & Simulation.EVENT_GAME_OVER) != 0) {
+            archiveRecording();
+            showGameOver();
+        }
+        if ((events & Simulation.EVENT_LEVEL_COMPLETE) != 0) {
+            nextLevel();
         }
-        
-        // Check collisions
-        checkCollisions();
     }
     
-    private void activatePowerMode() {
-        ghostsEatenCombo = 0;
-        for (Ghost ghost : ghosts) {
-            ghost.setFrightened(true);
+    /**
+     * The autopilot's move, searching only on the first tick of a pulse that needs a decision, so
+     * catch-up ticks don't stack up searches on the FX thread; null keeps the move already requested
+     */
+    private Direction nextAutopilotInput() {
+        if (autopilotSearched || !autopilot.needsDecision(simulation)) {
+            return null;
         }
+        autopilotSearched = true;
+        return autopilot.decide(simulation);
     }
     
-    private void checkCollisions() {
-        int pacX = pacMan.getTileX();
-        int pacY = pacMan.getTileY();
-        
-        for (Ghost ghost : ghosts) {
-            if (ghost.isInGhostHouse()) continue;
-            
-            int ghostX = ghost.getTileX();
-            int ghostY = ghost.getTileY();
-            
-            // Check if same tile
-            if (pacX == ghostX && pacY == ghostY) {
-                if (ghost.isFrightened() && !ghost.isEaten()) {
-                    // Eat the ghost
-                    ghost.setEaten();
-                    int points = GHOST_POINTS[Math.min(ghostsEatenCombo, 3)];
-                    score += points;
-                    ghostsEatenCombo++;
-                    mainApp.updateScore(score);
-                    SoundManager.getInstance().play(SoundManager.EAT_GHOST);
-                } else if (!ghost.isEaten()) {
-                    // Pac-Man dies
-                    pacMan.die();
-                    SoundManager.getInstance().play(SoundManager.DEATH);
-                }
+    /**
+     * Frightened warble while any ghost is frightened, otherwise the siren, pitched by the dots left;
+     * silent while paused, dying or after game over
+     */
+    private void updateLoopSound() {
+        SoundManager sound = SoundManager.getInstance();
+        if (paused || simulation.isGameOver() || !simulation.getPacMan().isAlive()) {
+            sound.setLoop(null);
+            return;
+        }
+        for (Ghost ghost : simulation.getGhosts()) {
+            if (ghost.isFrightened()) {
+                sound.setLoop(SoundManager.FRIGHTENED);
+                return;
             }
-            
-            // Also check proximity for smoother collision
-            double dx = Math.abs(pacMan.getX() - ghost.getX());
-            double dy = Math.abs(pacMan.getY() - ghost.getY());
-            if (dx < GameBoard.TILE_SIZE * 0.7 && dy < GameBoard.TILE_SIZE * 0.7) {
-                if (ghost.isFrightened() && !ghost.isEaten()) {
-                    ghost.setEaten();
-                    int points = GHOST_POINTS[Math.min(ghostsEatenCombo, 3)];
-                    score += points;
-                    ghostsEatenCombo++;
-                    mainApp.updateScore(score);
-                    SoundManager.getInstance().play(SoundManager.EAT_GHOST);
-                } else if (!ghost.isEaten()) {
-                    pacMan.die();
-                    SoundManager.getInstance().play(SoundManager.DEATH);
+        }
+        GhostSwarm swarm = simulation.getSwarm();
+        if (swarm != null) {
+            for (int i = 0, count = swarm.getCount(); i < count; i++) {
+                if (swarm.isFrightened(i)) {
+                    sound.setLoop(SoundManager.FRIGHTENED);
+                    return;
                 }
             }
         }
-    }
-    
-    private void handleDeath() {
-        lives--;
-        mainApp.updateLives(lives);
-        
-        if (lives <= 0) {
-            gameOver = true;
-            showGameOver();
-        } else {
-            // Reset positions
-            pacMan.reset();
-            for (Ghost ghost : ghosts) {
-                ghost.reset();
-            }
+        int totalDots = gameBoard.getTotalDots();
+        if (totalDots > 0) {
+            sound.setSirenLevel(1f - (float) gameBoard.getDotsRemaining() / totalDots);
         }
+        sound.setLoop(SoundManager.SIREN);
     }
     
     private void nextLevel() {
-        level++;
-        mainApp.updateLevel(level);
+        int level = simulation.getLevel();
         
         // Play level complete sound
         SoundManager.getInstance().play(SoundManager.LEVEL_COMPLETE);
         
-        // Reset board with all dots
-        gameBoard.resetMaze();
-        
-        // Reset positions
-        pacMan.reset();
-        for (Ghost ghost : ghosts) {
-            ghost.reset();
-        }
-        
         // Show level message
         paused = true;
         Platform.runLater(() -> {
@@ -311,8 +309,12 @@ public class GameController {
     }
     
     private void renderGameOver() {
-        gameBoard.render(pacMan, ghosts);
-        gameBoard.renderGameOver(score, level);
+        updateHud();
+        if (softwareRenderer != null) {
+            softwareRenderer.getView().setVisible(false);
+        }
+        gameBoard.render(simulation.getPacMan(), simulation.getGhosts());
+        gameBoard.renderGameOver(simulation.getScore(), simulation.getLevel());
     }
     
     private void showMessage(String title, String message) {
@@ -326,12 +328,165 @@ public class GameController {
     }
     
     private void render() {
-        gameBoard.render(pacMan, ghosts);
+        render(1.0);
+    }
+    
+    private void render(double alpha) {
+        updateHud();
+        if (softwareRenderer != null) {
+            softwareRenderer.getView().setVisible(true);
+            softwareRenderer.present(simulation, alpha);
+        } else {
+            gameBoard.render(simulation.getPacMan(), simulation.getGhosts(), simulation.getSwarm(), alpha);
+        }
+    }
+    
+    private void updateHud() {
+        if (simulation.getScore() != hudScore) {
+            hudScore = simulation.getScore();
+            mainApp.updateScore(hudScore);
+        }
+        if (simulation.getLives() != hudLives) {
+            hudLives = simulation.getLives();
+            mainApp.updateLives(hudLives);
+        }
+        if (simulation.getLevel() != hudLevel) {
+            hudLevel = simulation.getLevel();
+            mainApp.updateLevel(hudLevel);
+        }
+    }
+    
+    /**
+     * Draw with a SoftwareRenderer instead of the GameBoard canvas; its view must be in the scene
+     */
+    public void setSoftwareRenderer(SoftwareRenderer softwareRenderer) {
+        this.softwareRenderer = softwareRenderer;
+        softwareRenderer.setPacManColor(pacManColor);
+    }
+    
+    private void startRecording() {
+        if (simulation.getSwarm() != null) {
+            return;
+        }
+        recording = new Replay(simulation.getSeed(), gameBoard.getMapIndex(), difficulty, characterIndex);
+    }
+    
+    /**
+     * Close the current recording and write it to the replay directory, if one is set
+     */
+    private void archiveRecording() {
+        if (recording == null) {
+            return;
+        }
+        recording.finish(simulation);
+        if (replayDirectory != null && recording.getEndTick() > 0) {
+            Path file = replayDirectory.resolve("replay-" + Long.toHexString(recording.getSeed()) + ".pmr");
+            try {
+                recording.save(file);
+            } catch (IOException e) {
+                System.err.println("Could not save replay " + file + ": " + e.getMessage());
+            }
+        }
+        recording = null;
+    }
+    
+    /**
+     * Play a recorded session in real time instead of taking keyboard input.
+     * The replay must have been recorded on this board's map and this difficulty.
+     */
+    public void playReplay(Replay replay) {
+        recording = null;
+        // Replays are always of games without the swarm
+        simulation.setSwarmSize(0);
+        replayPlayer = new ReplayPlayer(replay, simulation);
+        pendingDirection = null;
+        paused = false;
+    }
+    
+    /**
+     * The replay reached its last recorded tick: report whether it ended exactly as recorded and
+     * hand control back to the keyboard, paused, to play on from there unless it ended in game over
+     */
+    private void finishReplay() {
+        Replay replay = replayPlayer.getReplay();
+        boolean matches = replayPlayer.matchesRecording();
+        replayPlayer = null;
+        String result = String.format("Replay %x %s the recording: tick %d, score %d (recorded tick %d, score %d)",
+                replay.getSeed(), matches ? "matches" : "does NOT match", simulation.getTick(),
+                simulation.getScore(), replay.getEndTick(), replay.getFinalScore());
+        if (matches) {
+            System.out.println(result);
+        } else {
+            System.err.println(result);
+        }
+        if (!simulation.isGameOver()) {
+            paused = true;
+            showMessage("REPLAY FINISHED", (matches ? "Ended exactly as recorded." : "Did NOT end as recorded!")
+                    + "\nPress SPACE to play on from here");
+        }
+    }
+    
+    /**
+     * Many-ghost mode: this many extra ghosts on top of the four, 0 for a normal game.
+     * Such games are not recorded, as replays don't hold the swarm.
+     */
+    public void setSwarmSize(int count) {
+        simulation.setSwarmSize(count);
+        if (count > 0) {
+            recording = null;
+        } else if (recording == null && replayPlayer == null) {
+            startRecording();
+        }
+    }
+    
+    /**
+     * Directory where finished sessions are saved as replay files, or null to keep them in memory only
+     */
+    public void setReplayDirectory(Path replayDirectory) {
+        this.replayDirectory = replayDirectory;
+    }
+    
+    /**
+     * Recording of the session in progress, or null while a replay is playing
+     */
+    public Replay getRecording() {
+        return recording;
+    }
+    
+    public boolean isPlayingReplay() {
+        return replayPlayer != null;
+    }
+    
+    /**
+     * Let the Autopilot play, searching up to its time budget (5 ms) each time Pac-Man reaches a tile,
+     * at most once per frame. Pressing a direction key switches it off again.
+     */
+    public void setAutopilot(boolean enabled) {
+        if (enabled && autopilot == null) {
+            autopilot = new Autopilot();
+            pendingDirection = null;
+        } else if (!enabled && autopilot != null) {
+            autopilot.dispose();
+            autopilot = null;
+        }
+    }
+    
+    public void toggleAutopilot() {
+        setAutopilot(autopilot == null);
+    }
+    
+    public boolean isAutopilotEnabled() {
+        return autopilot != null;
     }
     
     public void setPacManDirection(Direction direction) {
-        if (pacMan != null && !paused && !gameOver) {
-            pacMan.setDirection(direction);
+        if (replayPlayer != null) {
+            return;
+        }
+        // The player takes over from the autopilot
+        setAutopilot(false);
+        if (!paused && !simulation.isGameOver()) {
+            pendingDirection = direction;
         }
     }
     
@@ -340,18 +495,68 @@ public class GameController {
     }
     
     public boolean isGameOver() {
-        return gameOver;
+        return simulation.isGameOver();
     }
     
     public int getScore() {
-        return score;
+        return simulation.getScore();
     }
     
     public int getLives() {
-        return lives;
+        return simulation.getLives();
     }
     
     public int getLevel() {
-        return level;
+        return simulation.getLevel();
+    }
+    
+    /**
+     * Maximum number of ticks run in a single pulse to catch up after a slow frame
+     */
+    public void setMaxCatchUpSteps(int maxCatchUpSteps) {
+        this.maxCatchUpSteps = Math.max(1, maxCatchUpSteps);
+    }
+    
+    public int getMaxCatchUpSteps() {
+        return maxCatchUpSteps;
+    }
+    
+    public long getLateFrames() {
+        return stats.getLateFrames();
+    }
+    
+    public long getDroppedTicks() {
+        return stats.getDroppedTicks();
+    }
+    
+    public PerformanceStats getStats() {
+        return stats;
+    }
+    
+    /**
+     * Label that shows the performance stats while visible; see toggleStatsOverlay()
+     */
+    public void setStatsOverlay(Label statsOverlay) {
+        this.statsOverlay = statsOverlay;
+    }
+    
+    public void toggleStatsOverlay() {
+        if (statsOverlay != null) {
+            statsOverlay.setVisible(!statsOverlay.isVisible());
+            lastOverlayUpdate = 0;
+        }
+    }
+    
+    private void updateStatsOverlay(long now) {
+        // Refreshed a few times a second only: the text itself costs a layout pass
+        if (statsOverlay == null || !statsOverlay.isVisible() || now - lastOverlayUpdate < OVERLAY_REFRESH) {
+            return;
+        }
+        lastOverlayUpdate = now;
+        statsOverlay.setText(stats.report());
+    }
+    
+    public Simulation getSimulation() {
+        return simulation;
     }
 }
@@ -0,0 +1,42 @@
+package pacman;
+
+/**
+ * Small seedable random generator (SplitMix64) shared by everything random in a Simulation.
+ * Unlike java.util.Random its whole state is a single long that can be read back and
+ * restored, so a seed plus the player's inputs always reproduce the same game.
+ */
+public class GameRandom {
+
+    private long state;
+
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Uniform value in [0, bound), bound must be positive
+     */
+    public int nextInt(int bound) {
+        // 31 random bits scaled into range, no division
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,59 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable holder for one complete Simulation state.
+ * capture() and restore() only copy into and out of a buffer allocated once,
+ * so they are cheap enough to call every tick (save games, crash recovery, search).
+ */
+public class GameSnapshot {
+
+    private final ByteBuffer buffer;
+
+    public GameSnapshot() {
+        this.buffer = ByteBuffer.allocate(Simulation.SNAPSHOT_BYTES);
+    }
+
+    /**
+     * Overwrite this snapshot with the current state of the simulation
+     */
+    public void capture(Simulation simulation) {
+        buffer.clear();
+        simulation.writeSnapshot(buffer);
+        buffer.flip();
+    }
+
+    /**
+     * Put the simulation back into the captured state
+     */
+    public void restore(Simulation simulation) {
+        buffer.rewind();
+        simulation.readSnapshot(buffer);
+    }
+
+    /**
+     * Copy another snapshot into this one without touching any simulation
+     */
+    public void copyFrom(GameSnapshot other) {
+        buffer.clear();
+        buffer.put(other.buffer.array(), 0, other.buffer.limit());
+        buffer.flip();
+    }
+
+    /**
+     * Fill this snapshot from encoded state, e.g. read back from a save file
+     */
+    public void load(ByteBuffer source) {
+        buffer.clear();
+        buffer.put(source);
+        buffer.flip();
+    }
+
+    /**
+     * The encoded state, positioned at its start; e.g. to write it to a save file
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().rewind();
+    }
+}
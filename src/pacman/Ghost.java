@@ -1,35 +1,27 @@
 package pacman;
 
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
-import java.util.Random;
+import java.nio.ByteBuffer;
 
 /**
  * Represents a ghost enemy in the game
- * Each ghost has different AI behavior patterns
+ * Each ghost has different AI behavior patterns, supplied by its GhostBrain
  */
 public class Ghost {
     
     public enum GhostType {
-        BLINKY(Color.RED, 13, 11),      // Red ghost - chases Pac-Man directly
-        PINKY(Color.PINK, 14, 14),       // Pink ghost - ambushes ahead of Pac-Man
-        INKY(Color.CYAN, 12, 14),        // Cyan ghost - unpredictable
-        CLYDE(Color.ORANGE, 15, 14);     // Orange ghost - random/shy
+        BLINKY(13, 11),      // Red ghost - chases Pac-Man directly
+        PINKY(14, 14),       // Pink ghost - ambushes ahead of Pac-Man
+        INKY(12, 14),        // Cyan ghost - unpredictable
+        CLYDE(15, 14);       // Orange ghost - random/shy
         
-        private final Color color;
         private final int startX;
         private final int startY;
         
-        GhostType(Color color, int startX, int startY) {
-            this.color = color;
+        GhostType(int startX, int startY) {
             this.startX = startX;
             this.startY = startY;
         }
         
-        public Color getColor() {
-            return color;
-        }
-        
         public int getStartX() {
             return startX;
         }
@@ -39,12 +31,19 @@ public class Ghost {
         }
     }
     
+    // Tile where ghosts appear when they leave the ghost house
+    public static final int HOUSE_EXIT_X = 13;
+    public static final int HOUSE_EXIT_Y = 11;
+    
     private double x, y;
     private int tileX, tileY;
     private Direction direction;
     private GhostType type;
-    private GameBoard gameBoard;
-    private Random random;
+    // Position before the last update(), for render interpolation; not part of the game state
+    private double previousX, previousY;
+    private Maze maze;
+    private GameRandom random;
+    private GhostBrain brain;
     
     // Ghost states
     private boolean frightened = false;
@@ -63,24 +62,46 @@ public class Ghost {
     private int animationFrame = 0;
     private boolean blinking = false;
     
-    public Ghost(GhostType type, GameBoard gameBoard) {
-        this(type, gameBoard, 1.0);
+    // Size of the state written by writeState()
+    static final int STATE_BYTES = 65;
+    
+    public Ghost(GhostType type, Maze maze) {
+        this(type, maze, 1.0);
     }
     
-    public Ghost(GhostType type, GameBoard gameBoard, double speedMultiplier) {
+    public Ghost(GhostType type, Maze maze, double speedMultiplier) {
+        this(type, maze, speedMultiplier, new GameRandom(System.nanoTime()));
+    }
+    
+    /**
+     * Constructor sharing the simulation's random source, so a seeded game is reproducible
+     */
+    public Ghost(GhostType type, Maze maze, double speedMultiplier, GameRandom random) {
         this.type = type;
-        this.gameBoard = gameBoard;
-        this.random = new Random();
+        this.maze = maze;
+        this.random = random;
         this.speedMultiplier = speedMultiplier;
         this.speed = baseSpeed * speedMultiplier;
+        this.brain = GhostBrain.classic(type);
         reset();
     }
     
+    /**
+     * Replace how this ghost chases, e.g. with a cheaper or smarter AI; the default is GhostBrain.classic(type)
+     */
+    public void setBrain(GhostBrain brain) {
+        this.brain = brain;
+    }
+    
+    public GhostBrain getBrain() {
+        return brain;
+    }
+    
     public void reset() {
         this.tileX = type.getStartX();
         this.tileY = type.getStartY();
-        this.x = tileX * GameBoard.TILE_SIZE;
-        this.y = tileY * GameBoard.TILE_SIZE;
+        this.x = tileX * Maze.TILE_SIZE;
+        this.y = tileY * Maze.TILE_SIZE;
         this.direction = Direction.UP;
         this.frightened = false;
         this.eaten = false;
@@ -89,6 +110,8 @@ public class Ghost {
         this.inGhostHouse = true;
         this.ghostHouseTimer = getGhostHouseDelay();
         this.speed = baseSpeed * speedMultiplier;
+        this.previousX = x;
+        this.previousY = y;
     }
     
     private int getGhostHouseDelay() {
@@ -101,7 +124,9 @@ public class Ghost {
         }
     }
     
-    public void update(PacMan pacMan) {
+    public void update(WorldView world) {
+        previousX = x;
+        previousY = y;
         animationFrame++;
         
         // Handle ghost house exit
@@ -109,10 +134,12 @@ public class Ghost {
             ghostHouseTimer--;
             if (ghostHouseTimer <= 0) {
                 inGhostHouse = false;
-                tileX = 13;
-                tileY = 11;
-                x = tileX * GameBoard.TILE_SIZE;
-                y = tileY * GameBoard.TILE_SIZE;
+                tileX = HOUSE_EXIT_X;
+                tileY = HOUSE_EXIT_Y;
+                x = tileX * Maze.TILE_SIZE;
+                y = tileY * Maze.TILE_SIZE;
+                previousX = x;
+                previousY = y;
                 direction = Direction.LEFT;
             }
             return;
@@ -131,9 +158,8 @@ public class Ghost {
         // Handle eaten ghost returning to ghost house
         if (eaten) {
             speed = 4.0;
-            // Check if ghost has reached the ghost house area (inside the house)
-            // Ghost house is roughly at tiles (12-15, 13-15)
-            if (tileY >= 13 && tileY <= 15 && tileX >= 12 && tileX <= 15) {
+            // Check if ghost has reached the ghost house (the cells behind the map's door)
+            if (maze.getNavGraph().isInHouse(NavGraph.cellOf(tileX, tileY))) {
                 // Ghost has reached the ghost house, respawn
                 eaten = false;
                 frightened = false;
@@ -141,8 +167,10 @@ public class Ghost {
                 // Reset to spawn position
                 tileX = type.getStartX();
                 tileY = type.getStartY();
-                x = tileX * GameBoard.TILE_SIZE;
-                y = tileY * GameBoard.TILE_SIZE;
+                x = tileX * Maze.TILE_SIZE;
+                y = tileY * Maze.TILE_SIZE;
+                previousX = x;
+                previousY = y;
                 direction = Direction.UP;
                 inGhostHouse = true;
                 ghostHouseTimer = 60; // Short delay before exiting again
@@ -151,7 +179,7 @@ public class Ghost {
         
         moveProgress += (eaten ? 4.0 : (frightened ? 1.0 : speed));
         
-        if (moveProgress >= GameBoard.TILE_SIZE) {
+        if (moveProgress >= Maze.TILE_SIZE) {
             moveProgress = 0;
             
             // Move to next tile
@@ -160,212 +188,91 @@ public class Ghost {
             
             // Handle tunnel wrap-around
             if (nextTileX < 0) {
-                nextTileX = GameBoard.BOARD_WIDTH - 1;
-            } else if (nextTileX >= GameBoard.BOARD_WIDTH) {
+                nextTileX = Maze.WIDTH - 1;
+            } else if (nextTileX >= Maze.WIDTH) {
                 nextTileX = 0;
             }
             
             tileX = nextTileX;
             tileY = nextTileY;
-            x = tileX * GameBoard.TILE_SIZE;
-            y = tileY * GameBoard.TILE_SIZE;
+            x = tileX * Maze.TILE_SIZE;
+            y = tileY * Maze.TILE_SIZE;
             
             // Choose next direction
-            chooseDirection(pacMan);
+            chooseDirection(world);
         } else {
             // Update pixel position
-            x = tileX * GameBoard.TILE_SIZE + direction.getDx() * moveProgress;
-            y = tileY * GameBoard.TILE_SIZE + direction.getDy() * moveProgress;
+            x = tileX * Maze.TILE_SIZE + direction.getDx() * moveProgress;
+            y = tileY * Maze.TILE_SIZE + direction.getDy() * moveProgress;
             
             // Handle tunnel for pixel position
             if (tileX == 0 && direction == Direction.LEFT) {
-                x = tileX * GameBoard.TILE_SIZE - moveProgress;
-            } else if (tileX == GameBoard.BOARD_WIDTH - 1 && direction == Direction.RIGHT) {
-                x = tileX * GameBoard.TILE_SIZE + moveProgress;
+                x = tileX * Maze.TILE_SIZE - moveProgress;
+            } else if (tileX == Maze.WIDTH - 1 && direction == Direction.RIGHT) {
+                x = tileX * Maze.TILE_SIZE + moveProgress;
             }
         }
     }
     
-    private void chooseDirection(PacMan pacMan) {
-        Direction[] possibleDirections = new Direction[4];
-        int count = 0;
-        
-        // Check all four directions
-        for (Direction dir : new Direction[]{Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT}) {
-            // Don't go back
-            if (dir == direction.getOpposite()) {
-                continue;
-            }
-            
-            int nextX = tileX + dir.getDx();
-            int nextY = tileY + dir.getDy();
-            
-            // Handle tunnel
-            if (nextX < 0) nextX = GameBoard.BOARD_WIDTH - 1;
-            else if (nextX >= GameBoard.BOARD_WIDTH) nextX = 0;
-            
-            // Eaten ghosts can pass through ghost house door (tile 4), others cannot
-            if (gameBoard.canMove(nextX, nextY) && (eaten || gameBoard.getTile(nextX, nextY) != 4)) {
-                possibleDirections[count++] = dir;
+    void chooseDirection(WorldView world) {
+        // Legal exits come from the map's precomputed navigation table; eaten ghosts
+        // follow its flow field home instead, the only way through the ghost house door
+        NavGraph nav = maze.getNavGraph();
+        int possible = 0;
+        if (tileX >= 0 && tileX < Maze.WIDTH && tileY >= 0 && tileY < Maze.HEIGHT) {
+            if (eaten) {
+                // Return to ghost house along the map's precomputed flow field
+                direction = nav.getHomeDirection(NavGraph.cellOf(tileX, tileY), direction);
+                return;
             }
+            possible = nav.getExits(NavGraph.cellOf(tileX, tileY), false);
         }
         
+        // Don't go back
+        Direction opposite = direction.getOpposite();
+        if (opposite != Direction.NONE) {
+            possible &= ~(1 << opposite.ordinal());
+        }
+        int count = Integer.bitCount(possible);
+        
         if (count == 0) {
             // Dead end, turn around
-            direction = direction.getOpposite();
+            direction = opposite;
             return;
         }
         
         if (count == 1) {
-            direction = possibleDirections[0];
+            direction = Direction.fromOrdinal(Integer.numberOfTrailingZeros(possible));
             return;
         }
         
         // Choose direction based on AI
-        if (frightened && !eaten) {
+        if (frightened) {
             // Random movement when frightened
-            direction = possibleDirections[random.nextInt(count)];
-        } else if (eaten) {
-            // Return to ghost house
-            direction = getBestDirection(possibleDirections, count, 13, 14);
+            direction = nthDirection(possible, random.nextInt(count));
         } else {
             // Use ghost-specific AI
-            int targetX, targetY;
-            
-            switch (type) {
-                case BLINKY:
-                    // Chase Pac-Man directly
-                    targetX = pacMan.getTileX();
-                    targetY = pacMan.getTileY();
-                    break;
-                case PINKY:
-                    // Target 4 tiles ahead of Pac-Man
-                    targetX = pacMan.getTileX() + pacMan.getDirection().getDx() * 4;
-                    targetY = pacMan.getTileY() + pacMan.getDirection().getDy() * 4;
-                    break;
-                case INKY:
-                    // Complex targeting based on Blinky and Pac-Man
-                    targetX = pacMan.getTileX() + pacMan.getDirection().getDx() * 2;
-                    targetY = pacMan.getTileY() + pacMan.getDirection().getDy() * 2;
-                    targetX = targetX * 2 - 13; // Relative to Blinky's position
-                    targetY = targetY * 2 - 11;
-                    break;
-                case CLYDE:
-                    // Chase when far, scatter when close
-                    double distance = Math.sqrt(
-                        Math.pow(pacMan.getTileX() - tileX, 2) + 
-                        Math.pow(pacMan.getTileY() - tileY, 2)
-                    );
-                    if (distance > 8) {
-                        targetX = pacMan.getTileX();
-                        targetY = pacMan.getTileY();
-                    } else {
-                        targetX = 0;
-                        targetY = GameBoard.BOARD_HEIGHT - 1;
-                    }
-                    break;
-                default:
-                    targetX = pacMan.getTileX();
-                    targetY = pacMan.getTileY();
-            }
-            
-            direction = getBestDirection(possibleDirections, count, targetX, targetY);
+            direction = brain.chooseDirection(tileX, tileY, possible, world);
         }
     }
     
-    private Direction getBestDirection(Direction[] directions, int count, int targetX, int targetY) {
-        Direction best = directions[0];
-        double bestDistance = Double.MAX_VALUE;
-        
-        for (int i = 0; i < count; i++) {
-            int nextX = tileX + directions[i].getDx();
-            int nextY = tileY + directions[i].getDy();
-            
-            double distance = Math.sqrt(
-                Math.pow(targetX - nextX, 2) + 
-                Math.pow(targetY - nextY, 2)
-            );
-            
-            if (distance < bestDistance) {
-                bestDistance = distance;
-                best = directions[i];
-            }
-        }
-        
-        return best;
+    /**
+     * Among the exits in the mask, the one leading to the shortest path to the target
+     * (ties go to the first in UP, DOWN, LEFT, RIGHT order).
+     * Targets in walls or off the board aim for the nearest corridor cell.
+     */
+    Direction getBestDirection(int exits, int targetX, int targetY) {
+        return GhostBrain.towards(maze.getNavGraph(), tileX, tileY, exits, targetX, targetY);
     }
     
-    public void render(GraphicsContext gc) {
-        double centerX = x + GameBoard.TILE_SIZE / 2.0;
-        double centerY = y + GameBoard.TILE_SIZE / 2.0;
-        double radius = GameBoard.TILE_SIZE / 2.0 - 1;
-        
-        if (eaten) {
-            // Draw just eyes when eaten
-            drawEyes(gc, centerX, centerY, radius);
-            return;
+    /**
+     * The n-th exit (0-based) of the mask in UP, DOWN, LEFT, RIGHT order
+     */
+    private static Direction nthDirection(int exits, int n) {
+        for (int i = 0; i < n; i++) {
+            exits &= exits - 1;
         }
-        
-        // Ghost body color
-        Color bodyColor;
-        if (frightened) {
-            bodyColor = blinking ? Color.WHITE : Color.BLUE;
-        } else {
-            bodyColor = type.getColor();
-        }
-        
-        gc.setFill(bodyColor);
-        
-        // Draw ghost body (rounded top, wavy bottom)
-        gc.fillArc(centerX - radius, centerY - radius, 
-                   radius * 2, radius * 2,
-                   0, 180, javafx.scene.shape.ArcType.ROUND);
-        gc.fillRect(centerX - radius, centerY, radius * 2, radius);
-        
-        // Draw wavy bottom
-        int waveOffset = (animationFrame / 5) % 2;
-        for (int i = 0; i < 3; i++) {
-            double wx = centerX - radius + i * (radius * 2 / 3);
-            double wy = centerY + radius - 3;
-            double wh = (i + waveOffset) % 2 == 0 ? 6 : 3;
-            gc.fillOval(wx, wy, radius * 2 / 3, wh);
-        }
-        
-        // Draw eyes
-        if (!frightened) {
-            drawEyes(gc, centerX, centerY, radius);
-        } else {
-            // Frightened face
-            gc.setFill(Color.WHITE);
-            gc.fillOval(centerX - radius * 0.5, centerY - radius * 0.3, 4, 4);
-            gc.fillOval(centerX + radius * 0.2, centerY - radius * 0.3, 4, 4);
-            
-            // Wavy mouth
-            gc.setStroke(Color.WHITE);
-            gc.setLineWidth(1);
-            gc.beginPath();
-            gc.moveTo(centerX - radius * 0.5, centerY + radius * 0.3);
-            for (int i = 0; i < 4; i++) {
-                double mx = centerX - radius * 0.5 + i * radius * 0.3;
-                double my = centerY + radius * 0.3 + (i % 2 == 0 ? 2 : -2);
-                gc.lineTo(mx, my);
-            }
-            gc.stroke();
-        }
-    }
-    
-    private void drawEyes(GraphicsContext gc, double centerX, double centerY, double radius) {
-        // Eye whites
-        gc.setFill(Color.WHITE);
-        gc.fillOval(centerX - radius * 0.6, centerY - radius * 0.4, radius * 0.5, radius * 0.6);
-        gc.fillOval(centerX + radius * 0.1, centerY - radius * 0.4, radius * 0.5, radius * 0.6);
-        
-        // Pupils - look in direction of movement
-        gc.setFill(Color.BLUE);
-        double pupilOffsetX = direction.getDx() * 2;
-        double pupilOffsetY = direction.getDy() * 2;
-        gc.fillOval(centerX - radius * 0.45 + pupilOffsetX, centerY - radius * 0.25 + pupilOffsetY, radius * 0.25, radius * 0.35);
-        gc.fillOval(centerX + radius * 0.2 + pupilOffsetX, centerY - radius * 0.25 + pupilOffsetY, radius * 0.25, radius * 0.35);
+        return Direction.fromOrdinal(Integer.numberOfTrailingZeros(exits));
     }
     
     public void setFrightened(boolean frightened) {
@@ -400,6 +307,29 @@ public class Ghost {
         return y;
     }
     
+    /**
+     * Position to draw at, a fraction alpha (0..1) of the way from the previous tick to this one
+     */
+    public double getRenderX(double alpha) {
+        return Maze.interpolateX(previousX, x, alpha);
+    }
+    
+    public double getRenderY(double alpha) {
+        return previousY + (y - previousY) * alpha;
+    }
+    
+    public Direction getDirection() {
+        return direction;
+    }
+    
+    public boolean isBlinking() {
+        return blinking;
+    }
+    
+    public int getAnimationFrame() {
+        return animationFrame;
+    }
+    
     public boolean isFrightened() {
         return frightened;
     }
@@ -415,4 +345,42 @@ public class Ghost {
     public boolean isInGhostHouse() {
         return inGhostHouse;
     }
+    
+    void writeState(ByteBuffer buffer) {
+        buffer.putDouble(x);
+        buffer.putDouble(y);
+        buffer.putInt(tileX);
+        buffer.putInt(tileY);
+        buffer.put((byte) direction.ordinal());
+        buffer.put((byte) (frightened ? 1 : 0));
+        buffer.put((byte) (eaten ? 1 : 0));
+        buffer.putInt(frightenedTimer);
+        buffer.put((byte) (inGhostHouse ? 1 : 0));
+        buffer.putInt(ghostHouseTimer);
+        buffer.putDouble(speed);
+        buffer.putDouble(speedMultiplier);
+        buffer.putDouble(moveProgress);
+        buffer.putInt(animationFrame);
+        buffer.put((byte) (blinking ? 1 : 0));
+    }
+    
+    void readState(ByteBuffer buffer) {
+        x = buffer.getDouble();
+        y = buffer.getDouble();
+        tileX = buffer.getInt();
+        tileY = buffer.getInt();
+        direction = Direction.fromOrdinal(buffer.get());
+        frightened = buffer.get() != 0;
+        eaten = buffer.get() != 0;
+        frightenedTimer = buffer.getInt();
+        inGhostHouse = buffer.get() != 0;
+        ghostHouseTimer = buffer.getInt();
+        speed = buffer.getDouble();
+        speedMultiplier = buffer.getDouble();
+        moveProgress = buffer.getDouble();
+        animationFrame = buffer.getInt();
+        blinking = buffer.get() != 0;
+        previousX = x;
+        previousY = y;
+    }
 }
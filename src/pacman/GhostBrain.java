@@ -0,0 +1,113 @@
+package pacman;
+
+/**
+ * Picks a chasing ghost's direction at a junction. Ghost keeps the rules every ghost follows:
+ * no reversing, following a corridor, random turns while frightened, the way home once eaten.
+ * It asks its brain only when a chasing ghost has a real choice.
+ *
+ * Brains are called on every junction of every ghost, so they must not allocate, and must be
+ * stateless (or thread-safe): BatchSimulator runs many games at once and the same brain may
+ * serve all of them. Anything random would break replays unless it came from the game's own
+ * GameRandom, so the classic brains are deterministic.
+ */
+public interface GhostBrain {
+
+    /**
+     * @param tileX the ghost's tile column
+     * @param tileY the ghost's tile row
+     * @param exits the allowed directions as a bitmask of (1 << Direction.ordinal()), at least two
+     * @return one of the allowed directions
+     */
+    Direction chooseDirection(int tileX, int tileY, int exits, WorldView world);
+
+    /**
+     * Blinky: heads straight for Pac-Man's tile
+     */
+    static GhostBrain chaser() {
+        return (tileX, tileY, exits, world) -> towards(world.getNavGraph(), tileX, tileY, exits,
+                world.getPacManTileX(), world.getPacManTileY());
+    }
+
+    /**
+     * Pinky: aims four tiles ahead of Pac-Man to cut Pac-Man off
+     */
+    static GhostBrain ambusher() {
+        return (tileX, tileY, exits, world) -> {
+            Direction heading = world.getPacManDirection();
+            return towards(world.getNavGraph(), tileX, tileY, exits,
+                    world.getPacManTileX() + heading.getDx() * 4, world.getPacManTileY() + heading.getDy() * 4);
+        };
+    }
+
+    /**
+     * Inky: takes the tile two ahead of Pac-Man and doubles the vector from Blinky to it,
+     * so it closes in from the side opposite Blinky. Without a Blinky it aims at that tile.
+     */
+    static GhostBrain flanker() {
+        return (tileX, tileY, exits, world) -> {
+            Direction heading = world.getPacManDirection();
+            int pivotX = world.getPacManTileX() + heading.getDx() * 2;
+            int pivotY = world.getPacManTileY() + heading.getDy() * 2;
+            int blinky = world.findGhost(Ghost.GhostType.BLINKY);
+            int targetX = pivotX;
+            int targetY = pivotY;
+            if (blinky >= 0) {
+                targetX = pivotX * 2 - world.getGhostTileX(blinky);
+                targetY = pivotY * 2 - world.getGhostTileY(blinky);
+            }
+            return towards(world.getNavGraph(), tileX, tileY, exits, targetX, targetY);
+        };
+    }
+
+    /**
+     * Clyde: chases while more than 8 tiles away along the maze, otherwise retreats to the bottom left corner
+     */
+    static GhostBrain shy() {
+        return (tileX, tileY, exits, world) -> {
+            NavGraph nav = world.getNavGraph();
+            int distance = nav.getDistance(NavGraph.cellOf(tileX, tileY),
+                    NavGraph.cellOf(world.getPacManTileX(), world.getPacManTileY()));
+            if (distance > 8) {
+                return towards(nav, tileX, tileY, exits, world.getPacManTileX(), world.getPacManTileY());
+            }
+            return towards(nav, tileX, tileY, exits, 0, Maze.HEIGHT - 1);
+        };
+    }
+
+    /**
+     * The arcade behavior of a ghost type
+     */
+    static GhostBrain classic(Ghost.GhostType type) {
+        switch (type) {
+            case PINKY: return ambusher();
+            case INKY: return flanker();
+            case CLYDE: return shy();
+            default: return chaser();
+        }
+    }
+
+    /**
+     * Among the exits in the mask, the one leading to the shortest path to the target
+     * (ties go to the first in UP, DOWN, LEFT, RIGHT order).
+     * Targets in walls or off the board aim for the nearest corridor cell.
+     */
+    static Direction towards(NavGraph nav, int tileX, int tileY, int exits, int targetX, int targetY) {
+        int cell = NavGraph.cellOf(tileX, tileY);
+        int targetCell = nav.getNearestWalkable(targetX, targetY);
+        Direction best = null;
+        int bestDistance = Integer.MAX_VALUE;
+
+        for (int remaining = exits; remaining != 0; remaining &= remaining - 1) {
+            int d = Integer.numberOfTrailingZeros(remaining);
+            int next = nav.getNeighbor(cell, d);
+            int distance = next == NavGraph.NO_CELL ? NavGraph.UNREACHABLE : nav.getDistance(next, targetCell);
+
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = Direction.fromOrdinal(d);
+            }
+        }
+
+        return best;
+    }
+}
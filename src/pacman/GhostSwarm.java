@@ -0,0 +1,293 @@
+package pacman;
+
+/**
+ * Extra ghosts for the many-ghost mode, hundreds or thousands of them on top of the four
+ * arcade ghosts. A Ghost object per ghost is too slow at that count, so the swarm keeps each
+ * field in its own primitive array, indexed by ghost, and moves them all in one loop.
+ * Renderers and collision checks read the same arrays through the index accessors, and the
+ * swarm keeps a CollisionGrid of the ghosts that can touch Pac-Man, updated as they change tile.
+ *
+ * Swarm ghosts follow the same rules as Ghost: they leave the house one after another, chase
+ * with the classic brain of their type (index % 4) looking at the same WorldView as the arcade
+ * ghosts, wander while frightened and run home once eaten. Randomness comes from the game's
+ * GameRandom, so a seeded game with a swarm is still reproducible, but the swarm is not part of
+ * simulation snapshots.
+ */
+public class GhostSwarm {
+
+    static final byte MODE_HOUSE = 0;
+    static final byte MODE_CHASE = 1;
+    static final byte MODE_FRIGHTENED = 2;
+    static final byte MODE_EATEN = 3;
+
+    private static final Ghost.GhostType[] TYPES = Ghost.GhostType.values();
+    // Ghosts leaving the house per tick, once the first ones are out
+    private static final int RELEASE_PER_TICK = 8;
+    private static final int FRIGHTENED_TICKS = 600;
+    private static final int RESPAWN_TICKS = 60;
+    private static final float EATEN_SPEED = 4.0f;
+    private static final float FRIGHTENED_SPEED = 1.0f;
+
+    private final int count;
+    private final Maze maze;
+    private final GameRandom random;
+    private final GhostBrain[] brains = new GhostBrain[TYPES.length];
+
+    // One entry per ghost
+    private final byte[] type;
+    private final byte[] mode;
+    private final byte[] direction;
+    private final int[] tileX;
+    private final int[] tileY;
+    // Chasing speed in pixels per tick; varied a little so ghosts of a type don't move as one block
+    private final float[] speed;
+    // Pixels moved from the tile towards the next one
+    private final float[] progress;
+    // House countdown in MODE_HOUSE, frightened countdown in MODE_FRIGHTENED
+    private final int[] timer;
+    // Pixel position before the last update(), for render interpolation
+    private final float[] previousX;
+    private final float[] previousY;
+    private int animationFrame = 0;
+    // Ghosts out of the house and not eaten, by tile
+    private final CollisionGrid grid;
+
+    public GhostSwarm(int count, Maze maze, double speedMultiplier, GameRandom random) {
+        this.count = count;
+        this.maze = maze;
+        this.random = random;
+        for (Ghost.GhostType ghostType : TYPES) {
+            brains[ghostType.ordinal()] = GhostBrain.classic(ghostType);
+        }
+        type = new byte[count];
+        mode = new byte[count];
+        direction = new byte[count];
+        tileX = new int[count];
+        tileY = new int[count];
+        speed = new float[count];
+        progress = new float[count];
+        timer = new int[count];
+        previousX = new float[count];
+        previousY = new float[count];
+        grid = new CollisionGrid(count);
+        for (int i = 0; i < count; i++) {
+            type[i] = (byte) (i % TYPES.length);
+            speed[i] = (float) (1.5 * speedMultiplier * (0.8 + 0.3 * random.nextDouble()));
+        }
+        reset();
+    }
+
+    /**
+     * Put every ghost back in the house, to leave again in order
+     */
+    public void reset() {
+        for (int i = 0; i < count; i++) {
+            placeInHouse(i, 100 + type[i] * 25 + i / RELEASE_PER_TICK);
+            previousX[i] = getX(i);
+            previousY[i] = getY(i);
+        }
+        grid.clear();
+        animationFrame = 0;
+    }
+
+    private void placeInHouse(int i, int delay) {
+        Ghost.GhostType ghostType = TYPES[type[i]];
+        mode[i] = MODE_HOUSE;
+        timer[i] = delay;
+        tileX[i] = ghostType.getStartX();
+        tileY[i] = ghostType.getStartY();
+        progress[i] = 0;
+        direction[i] = (byte) Direction.UP.ordinal();
+    }
+
+    /**
+     * Advance every ghost by one tick
+     */
+    public void update(WorldView world) {
+        animationFrame++;
+        NavGraph nav = maze.getNavGraph();
+        int tile = Maze.TILE_SIZE;
+
+        for (int i = 0; i < count; i++) {
+            previousX[i] = getX(i);
+            previousY[i] = getY(i);
+
+            switch (mode[i]) {
+                case MODE_HOUSE:
+                    if (--timer[i] > 0) {
+                        continue;
+                    }
+                    mode[i] = MODE_CHASE;
+                    tileX[i] = Ghost.HOUSE_EXIT_X;
+                    tileY[i] = Ghost.HOUSE_EXIT_Y;
+                    progress[i] = 0;
+                    direction[i] = (byte) Direction.LEFT.ordinal();
+                    previousX[i] = tileX[i] * tile;
+                    previousY[i] = tileY[i] * tile;
+                    grid.place(i, tileX[i], tileY[i]);
+                    continue;
+                case MODE_FRIGHTENED:
+                    if (--timer[i] <= 0) {
+                        mode[i] = MODE_CHASE;
+                    }
+                    break;
+                case MODE_EATEN:
+                    // Back in the ghost house: respawn
+                    if (nav.isInHouse(NavGraph.cellOf(tileX[i], tileY[i]))) {
+                        placeInHouse(i, RESPAWN_TICKS);
+                        previousX[i] = getX(i);
+                        previousY[i] = getY(i);
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            float moved = progress[i]
+                    + (mode[i] == MODE_EATEN ? EATEN_SPEED : mode[i] == MODE_FRIGHTENED ? FRIGHTENED_SPEED : speed[i]);
+            if (moved < tile) {
+                progress[i] = moved;
+                continue;
+            }
+
+            // Next tile, wrapping through the side tunnel
+            progress[i] = 0;
+            Direction heading = Direction.fromOrdinal(direction[i]);
+            int nextX = tileX[i] + heading.getDx();
+            if (nextX < 0) {
+                nextX = Maze.WIDTH - 1;
+            } else if (nextX >= Maze.WIDTH) {
+                nextX = 0;
+            }
+            tileX[i] = nextX;
+            tileY[i] += heading.getDy();
+            if (mode[i] != MODE_EATEN) {
+                grid.place(i, tileX[i], tileY[i]);
+            }
+            direction[i] = (byte) chooseDirection(i, nav, world);
+        }
+    }
+
+    private int chooseDirection(int i, NavGraph nav, WorldView world) {
+        int x = tileX[i];
+        int y = tileY[i];
+        int cell = NavGraph.cellOf(x, y);
+        int exits = 0;
+        if (x >= 0 && x < Maze.WIDTH && y >= 0 && y < Maze.HEIGHT) {
+            if (mode[i] == MODE_EATEN) {
+                return nav.getHomeDirection(cell, Direction.fromOrdinal(direction[i])).ordinal();
+            }
+            exits = nav.getExits(cell, false);
+        }
+
+        // Don't go back unless it is a dead end
+        int opposite = Direction.fromOrdinal(direction[i]).getOpposite().ordinal();
+        exits &= ~(1 << opposite);
+        int choices = Integer.bitCount(exits);
+        if (choices == 0) {
+            return opposite;
+        }
+        if (choices == 1) {
+            return Integer.numberOfTrailingZeros(exits);
+        }
+
+        if (mode[i] == MODE_FRIGHTENED) {
+            for (int skip = random.nextInt(choices); skip > 0; skip--) {
+                exits &= exits - 1;
+            }
+            return Integer.numberOfTrailingZeros(exits);
+        }
+        return brains[type[i]].chooseDirection(x, y, exits, world).ordinal();
+    }
+
+    /**
+     * Power pellet: every ghost out of the house turns around and can be eaten
+     */
+    public void frighten() {
+        for (int i = 0; i < count; i++) {
+            if (mode[i] == MODE_CHASE || mode[i] == MODE_FRIGHTENED) {
+                mode[i] = MODE_FRIGHTENED;
+                timer[i] = FRIGHTENED_TICKS;
+                direction[i] = (byte) Direction.fromOrdinal(direction[i]).getOpposite().ordinal();
+            }
+        }
+    }
+
+    public void setEaten(int i) {
+        mode[i] = MODE_EATEN;
+        grid.remove(i);
+    }
+
+    /**
+     * The ghosts that can touch Pac-Man, by tile; read only
+     */
+    CollisionGrid getCollisionGrid() {
+        return grid;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Ghost.GhostType getType(int i) {
+        return TYPES[type[i]];
+    }
+
+    public int getTileX(int i) {
+        return tileX[i];
+    }
+
+    public int getTileY(int i) {
+        return tileY[i];
+    }
+
+    public float getX(int i) {
+        return tileX[i] * Maze.TILE_SIZE + Direction.fromOrdinal(direction[i]).getDx() * progress[i];
+    }
+
+    public float getY(int i) {
+        return tileY[i] * Maze.TILE_SIZE + Direction.fromOrdinal(direction[i]).getDy() * progress[i];
+    }
+
+    /**
+     * Position to draw at, a fraction alpha (0..1) of the way from the previous tick to this one
+     */
+    public double getRenderX(int i, double alpha) {
+        return Maze.interpolateX(previousX[i], getX(i), alpha);
+    }
+
+    public double getRenderY(int i, double alpha) {
+        return previousY[i] + (getY(i) - previousY[i]) * alpha;
+    }
+
+    public Direction getDirection(int i) {
+        return Direction.fromOrdinal(direction[i]);
+    }
+
+    public boolean isInGhostHouse(int i) {
+        return mode[i] == MODE_HOUSE;
+    }
+
+    public boolean isFrightened(int i) {
+        return mode[i] == MODE_FRIGHTENED;
+    }
+
+    public boolean isEaten(int i) {
+        return mode[i] == MODE_EATEN;
+    }
+
+    /**
+     * Flashing white as the frightened time runs out, like Ghost
+     */
+    public boolean isBlinking(int i) {
+        return mode[i] == MODE_FRIGHTENED && timer[i] < 120 && (timer[i] / 15) % 2 == 0;
+    }
+
+    /**
+     * Offset per ghost so the skirts don't all wave in step
+     */
+    public int getAnimationFrame(int i) {
+        return animationFrame + i;
+    }
+}
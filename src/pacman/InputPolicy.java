@@ -0,0 +1,40 @@
+package pacman;
+
+/**
+ * Supplies Pac-Man's input for games run without a player, e.g. by BatchSimulator.
+ * Implementations must be stateless (or thread-safe): one policy drives many games at once,
+ * and any randomness has to come from the per-game GameRandom passed in.
+ */
+public interface InputPolicy {
+
+    /**
+     * Direction to request on the next tick of the simulation, or null to keep the current one
+     */
+    Direction nextInput(Simulation simulation, GameRandom random);
+
+    /**
+     * Wanders at random: switches direction with the given chance per tick, and always when stuck
+     */
+    static InputPolicy random(double changeChance) {
+        return (simulation, random) -> {
+            if (!simulation.getPacMan().isMoving() || random.nextDouble() < changeChance) {
+                return Direction.fromOrdinal(random.nextInt(4));
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Cycles through a fixed list of directions, requesting the next one every ticksPerInput ticks
+     */
+    static InputPolicy scripted(Direction[] script, int ticksPerInput) {
+        Direction[] directions = script.clone();
+        return (simulation, random) -> {
+            long tick = simulation.getTick();
+            if (tick % ticksPerInput != 0) {
+                return null;
+            }
+            return directions[(int) ((tick / ticksPerInput) % directions.length)];
+        };
+    }
+}
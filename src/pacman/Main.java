@@ -1,5 +1,10 @@
 package pacman;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
@@ -34,10 +39,63 @@ public class Main extends Application {
     private int selectedCharacter = 0;
     private int difficulty = 1;
     
+    // Command line: --record-dir <dir> saves every session, --replay <file> plays one back
+    private Path replayDirectory;
+    // --renderer software draws off the FX thread, --scale <n> zooms the board (also software)
+    private boolean softwareRendering = false;
+    private int boardScale = 1;
+    // --stats-file <file> writes the frame and tick timings there on exit
+    private Path statsFile;
+    // --ghosts <n> adds n more ghosts (many-ghost mode)
+    private int swarmSize = 0;
+    // --autopilot lets the computer play every game (attract mode); F2 toggles it in game
+    private boolean autopilot = false;
+    
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         
+        Replay replayToPlay = null;
+        List<String> args = getParameters().getRaw();
+        for (int i = 0; i + 1 < args.size(); i++) {
+            if (args.get(i).equals("--record-dir")) {
+                replayDirectory = Paths.get(args.get(i + 1));
+                try {
+                    Files.createDirectories(replayDirectory);
+                } catch (IOException e) {
+                    System.err.println("Could not create replay directory " + replayDirectory + ": " + e.getMessage());
+                    replayDirectory = null;
+                }
+            } else if (args.get(i).equals("--stats-file")) {
+                statsFile = Paths.get(args.get(i + 1));
+            } else if (args.get(i).equals("--renderer")) {
+                softwareRendering = args.get(i + 1).equals("software");
+            } else if (args.get(i).equals("--scale")) {
+                try {
+                    boardScale = Math.max(1, Integer.parseInt(args.get(i + 1)));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid scale " + args.get(i + 1));
+                }
+            } else if (args.get(i).equals("--ghosts")) {
+                try {
+                    swarmSize = Math.max(0, Integer.parseInt(args.get(i + 1)));
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid ghost count " + args.get(i + 1));
+                }
+            } else if (args.get(i).equals("--replay")) {
+                try {
+                    replayToPlay = Replay.load(Paths.get(args.get(i + 1)));
+                } catch (IOException e) {
+                    System.err.println("Could not load replay " + args.get(i + 1) + ": " + e.getMessage());
+                }
+            }
+        }
+        
+        autopilot = args.contains("--autopilot");
+        
+        // Sounds load in the background while the menu is up
+        SoundManager.getInstance();
+        
         // Create menu screen
         menuScreen = new MenuScreen(this);
         menuScene = new Scene(menuScreen);
@@ -61,6 +119,11 @@ public class Main extends Application {
         primaryStage.setScene(menuScene);
         primaryStage.setResizable(false);
         primaryStage.show();
+        
+        if (replayToPlay != null) {
+            startGameWithSettings(replayToPlay.getMapIndex(), replayToPlay.getCharacterIndex(), replayToPlay.getDifficulty());
+            gameController.playReplay(replayToPlay);
+        }
     }
     
     /**
@@ -86,10 +149,38 @@ public class Main extends Application {
         
         // Create game board with selected map
         GameBoard gameBoard = new GameBoard(mapIndex);
-        gameRoot.setCenter(gameBoard);
+        StackPane boardPane = new StackPane(gameBoard);
+        SoftwareRenderer softwareRenderer = null;
+        if (softwareRendering || boardScale > 1) {
+            // The canvas stays underneath for the game over screen, zoomed to match
+            softwareRenderer = new SoftwareRenderer(gameBoard.getMaze(), MenuScreen.CHARACTER_COLORS[characterIndex], boardScale);
+            gameBoard.setScaleX(boardScale);
+            gameBoard.setScaleY(boardScale);
+            boardPane.getChildren().add(softwareRenderer.getView());
+        }
+        
+        // Performance stats overlay, toggled with F3
+        Label statsOverlay = new Label();
+        statsOverlay.setFont(Font.font("Monospaced", 11));
+        statsOverlay.setTextFill(Color.LIGHTGREEN);
+        statsOverlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.7); -fx-padding: 4;");
+        statsOverlay.setMouseTransparent(true);
+        statsOverlay.setVisible(false);
+        StackPane.setAlignment(statsOverlay, Pos.TOP_LEFT);
+        boardPane.getChildren().add(statsOverlay);
+        gameRoot.setCenter(boardPane);
         
         // Create game controller with settings
         gameController = new GameController(gameBoard, this, characterIndex, difficultyLevel);
+        gameController.setReplayDirectory(replayDirectory);
+        if (softwareRenderer != null) {
+            gameController.setSoftwareRenderer(softwareRenderer);
+        }
+        gameController.setStatsOverlay(statsOverlay);
+        if (swarmSize > 0) {
+            gameController.setSwarmSize(swarmSize);
+        }
+        gameController.setAutopilot(autopilot);
         
         gameScene = new Scene(gameRoot);
         gameScene.setFill(Color.BLACK);
@@ -116,6 +207,12 @@ public class Main extends Application {
                 case SPACE:
                     gameController.togglePause();
                     break;
+                case F2:
+                    gameController.toggleAutopilot();
+                    break;
+                case F3:
+                    gameController.toggleStatsOverlay();
+                    break;
                 case R:
                     gameController.restartGame();
                     break;
@@ -208,6 +305,22 @@ public class Main extends Application {
         levelLabel.setText("LEVEL: " + level);
     }
     
+    @Override
+    public void stop() {
+        // Closing the window mid-game still saves the session's replay
+        if (gameController != null) {
+            gameController.stopGame();
+        }
+        SoundManager.getInstance().shutdown();
+        if (gameController != null && statsFile != null) {
+            try {
+                gameController.getStats().writeTo(statsFile);
+            } catch (IOException e) {
+                System.err.println("Could not write stats to " + statsFile + ": " + e.getMessage());
+            }
+        }
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
@@ -160,6 +160,11 @@ public class MapTemplates {
         {1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1,1}
     };
     
+    /**
+     * Number of maps available through getMap()
+     */
+    public static final int MAP_COUNT = 4;
+    
     /**
      * Get map template by index
      */
@@ -172,4 +177,45 @@ public class MapTemplates {
             default: return CLASSIC;
         }
     }
+    
+    // Templates packed once into flat byte arrays (index = y * Maze.WIDTH + x), shared by every Maze
+    private static final byte[][] PACKED_MAPS = new byte[MAP_COUNT][];
+    private static final int[] DOT_COUNTS = new int[MAP_COUNT];
+    
+    static {
+        for (int i = 0; i < MAP_COUNT; i++) {
+            int[][] template = getMap(i);
+            byte[] packed = new byte[Maze.WIDTH * Maze.HEIGHT];
+            int dots = 0;
+            for (int y = 0; y < Maze.HEIGHT; y++) {
+                for (int x = 0; x < Maze.WIDTH; x++) {
+                    int tile = template[y][x];
+                    packed[y * Maze.WIDTH + x] = (byte) tile;
+                    if (tile == Maze.DOT || tile == Maze.POWER_PELLET) {
+                        dots++;
+                    }
+                }
+            }
+            PACKED_MAPS[i] = packed;
+            DOT_COUNTS[i] = dots;
+        }
+    }
+    
+    /**
+     * Packed tiles of a map. The array is shared and must never be modified.
+     */
+    static byte[] getPackedMap(int index) {
+        return PACKED_MAPS[isValidIndex(index) ? index : 0];
+    }
+    
+    /**
+     * Number of dots and power pellets on a fresh copy of the map
+     */
+    public static int getDotCount(int index) {
+        return DOT_COUNTS[isValidIndex(index) ? index : 0];
+    }
+    
+    private static boolean isValidIndex(int index) {
+        return index >= 0 && index < MAP_COUNT;
+    }
 }
@@ -0,0 +1,181 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tile state of a single maze, independent of any rendering.
+ * GameBoard draws it and the Simulation plays on it.
+ */
+public class Maze {
+
+    // Size of a tile in simulation pixels
+    public static final int TILE_SIZE = 20;
+    public static final int WIDTH = 28;
+    public static final int HEIGHT = 31;
+
+    // Row of the side tunnels
+    public static final int TUNNEL_ROW = 14;
+
+    // Tile codes:
+    // 0 = empty (path)
+    // 1 = wall
+    // 2 = dot
+    // 3 = power pellet
+    // 4 = ghost house door
+    // 5 = empty (no dot)
+    public static final int EMPTY = 0;
+    public static final int WALL = 1;
+    public static final int DOT = 2;
+    public static final int POWER_PELLET = 3;
+    public static final int DOOR = 4;
+    public static final int EATEN = 5;
+
+    // Current tiles, one byte per cell at y * WIDTH + x
+    private final byte[] tiles = new byte[WIDTH * HEIGHT];
+    // Fresh copy of the current map, shared with every other Maze on the same map
+    private byte[] template;
+    private NavGraph navGraph;
+    private int currentMapIndex;
+
+    private int dotsRemaining;
+    private int totalDots;
+
+    // Size of the state written by writeState()
+    static final int STATE_BYTES = 1 + 4 + WIDTH * HEIGHT;
+
+    public Maze() {
+        this(0); // Default to classic map
+    }
+
+    public Maze(int mapIndex) {
+        this.currentMapIndex = mapIndex;
+        init();
+    }
+
+    public void init() {
+        template = MapTemplates.getPackedMap(currentMapIndex);
+        navGraph = NavGraph.forMap(currentMapIndex);
+        totalDots = MapTemplates.getDotCount(currentMapIndex);
+        reset();
+    }
+
+    public void setMapIndex(int mapIndex) {
+        this.currentMapIndex = mapIndex;
+        init();
+    }
+
+    public int getMapIndex() {
+        return currentMapIndex;
+    }
+
+    /**
+     * Precomputed navigation table of the current map
+     */
+    public NavGraph getNavGraph() {
+        return navGraph;
+    }
+
+    public void reset() {
+        System.arraycopy(template, 0, tiles, 0, tiles.length);
+        dotsRemaining = totalDots;
+    }
+
+    public boolean isWall(int x, int y) {
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            // Allow tunnel wrap-around
+            if (y == TUNNEL_ROW && (x < 0 || x >= WIDTH)) {
+                return false;
+            }
+            return true;
+        }
+        return tiles[y * WIDTH + x] == WALL;
+    }
+
+    public boolean isDot(int x, int y) {
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            return false;
+        }
+        return tiles[y * WIDTH + x] == DOT;
+    }
+
+    public boolean isPowerPellet(int x, int y) {
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            return false;
+        }
+        return tiles[y * WIDTH + x] == POWER_PELLET;
+    }
+
+    public void eatDot(int x, int y) {
+        if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
+            int index = y * WIDTH + x;
+            if (tiles[index] == DOT || tiles[index] == POWER_PELLET) {
+                tiles[index] = EATEN;
+                dotsRemaining--;
+            }
+        }
+    }
+
+    public int getDotsRemaining() {
+        return dotsRemaining;
+    }
+
+    public int getTotalDots() {
+        return totalDots;
+    }
+
+    public int getTile(int x, int y) {
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            return EMPTY;
+        }
+        return tiles[y * WIDTH + x];
+    }
+
+    /**
+     * Horizontal position a fraction alpha (0..1) of the way from previous to current.
+     * A jump of more than half the board is a wrap through the side tunnel, so it is
+     * interpolated the short way, off the edge of the board
+     */
+    public static double interpolateX(double previous, double current, double alpha) {
+        double boardWidth = WIDTH * TILE_SIZE;
+        double dx = current - previous;
+        if (dx > boardWidth / 2) {
+            dx -= boardWidth;
+        } else if (dx < -boardWidth / 2) {
+            dx += boardWidth;
+        }
+        return current - dx * (1 - alpha);
+    }
+
+    /**
+     * The live tile array, indexed y * WIDTH + x; callers must not modify it
+     */
+    byte[] getTileData() {
+        return tiles;
+    }
+
+    public boolean canMove(int x, int y) {
+        // Handle tunnel
+        if (y == TUNNEL_ROW && (x < 0 || x >= WIDTH)) {
+            return true;
+        }
+        if (x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT) {
+            return false;
+        }
+        return tiles[y * WIDTH + x] != WALL;
+    }
+
+    void writeState(ByteBuffer buffer) {
+        buffer.put((byte) currentMapIndex);
+        buffer.putInt(dotsRemaining);
+        buffer.put(tiles);
+    }
+
+    void readState(ByteBuffer buffer) {
+        int mapIndex = buffer.get();
+        if (mapIndex != currentMapIndex) {
+            setMapIndex(mapIndex);
+        }
+        dotsRemaining = buffer.getInt();
+        buffer.get(tiles);
+    }
+}
@@ -0,0 +1,322 @@
+package pacman;
+
+import java.util.Arrays;
+
+/**
+ * Navigation table of one map, built once and shared by every game on it.
+ * Walls never change during a game, so for each cell (index y * Maze.WIDTH + x) it stores:
+ * - the legal exits as a bitmask of (1 << Direction.ordinal()), without and with ghost-door access
+ * - the neighbor cell in each direction, with the side tunnel wrapped around
+ * - whether the cell is a junction, i.e. has three or more exits
+ *
+ * It also holds BFS path distances, so ghost targeting is an integer table lookup:
+ * all-pairs distances between walkable cells (compact short[], indexed by walkable cell number),
+ * and the distance of every cell to the ghost house through the door, for eaten ghosts.
+ *
+ * The ghost house is found from the map itself: the cells behind the door tiles that can't be
+ * reached from the corridors without crossing a door. Eaten ghosts follow a flow field towards
+ * it, the best exit for every cell and heading (they may not reverse either), so each of their
+ * decisions is one lookup and every path ends in the house.
+ */
+public class NavGraph {
+
+    public static final int CELLS = Maze.WIDTH * Maze.HEIGHT;
+    public static final int NO_CELL = -1;
+    public static final int UNREACHABLE = Short.MAX_VALUE;
+
+    private static final NavGraph[] GRAPHS = new NavGraph[MapTemplates.MAP_COUNT];
+
+    static {
+        for (int i = 0; i < MapTemplates.MAP_COUNT; i++) {
+            GRAPHS[i] = new NavGraph(MapTemplates.getPackedMap(i));
+        }
+    }
+
+    private final byte[] exits = new byte[CELLS];
+    private final byte[] doorExits = new byte[CELLS];
+    private final boolean[] junction = new boolean[CELLS];
+    // neighbors[cell * 4 + direction]
+    private final int[] neighbors = new int[CELLS * 4];
+
+    // Walkable cells (not wall, not door) are numbered 0..walkableCount-1 for the distance table
+    private final short[] walkableIndex = new short[CELLS];
+    private final int walkableCount;
+    // distances[from * walkableCount + to], UNREACHABLE if there is no path
+    private final short[] distances;
+    // Cells inside the ghost house
+    private final boolean[] house = new boolean[CELLS];
+    // Path length to the nearest house cell, allowed to cross the door
+    private final short[] homeDistances = new short[CELLS];
+    // homeDirections[cell * 5 + heading ordinal]: way home without reversing, NONE included
+    private final byte[] homeDirections = new byte[CELLS * 5];
+    // Closest walkable cell to each cell, so targets inside walls still resolve
+    private final int[] nearestWalkable = new int[CELLS];
+
+    private NavGraph(byte[] tiles) {
+        for (int y = 0; y < Maze.HEIGHT; y++) {
+            for (int x = 0; x < Maze.WIDTH; x++) {
+                int cell = y * Maze.WIDTH + x;
+                int mask = 0;
+                int doorMask = 0;
+                for (int d = 0; d < 4; d++) {
+                    Direction dir = Direction.fromOrdinal(d);
+                    int nextX = x + dir.getDx();
+                    int nextY = y + dir.getDy();
+
+                    // Handle tunnel
+                    if (nextX < 0) nextX = Maze.WIDTH - 1;
+                    else if (nextX >= Maze.WIDTH) nextX = 0;
+
+                    if (nextY < 0 || nextY >= Maze.HEIGHT) {
+                        neighbors[cell * 4 + d] = NO_CELL;
+                        continue;
+                    }
+                    int next = nextY * Maze.WIDTH + nextX;
+                    neighbors[cell * 4 + d] = next;
+
+                    int tile = tiles[next];
+                    if (tile != Maze.WALL) {
+                        doorMask |= 1 << d;
+                        if (tile != Maze.DOOR) {
+                            mask |= 1 << d;
+                        }
+                    }
+                }
+                exits[cell] = (byte) mask;
+                doorExits[cell] = (byte) doorMask;
+                junction[cell] = Integer.bitCount(mask) >= 3;
+            }
+        }
+
+        int count = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            boolean walkable = tiles[cell] != Maze.WALL && tiles[cell] != Maze.DOOR;
+            walkableIndex[cell] = (short) (walkable ? count++ : -1);
+        }
+        walkableCount = count;
+
+        distances = new short[walkableCount * walkableCount];
+        short[] field = new short[CELLS];
+        int[] queue = new int[CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            int from = walkableIndex[cell];
+            if (from < 0) continue;
+            breadthFirst(cell, exits, field, queue);
+            for (int other = 0; other < CELLS; other++) {
+                int to = walkableIndex[other];
+                if (to >= 0) {
+                    distances[from * walkableCount + to] = field[other];
+                }
+            }
+        }
+
+        findNearestWalkable(queue);
+        findHouse(tiles, queue);
+        breadthFirst(queue, houseCells(queue), doorExits, homeDistances);
+        buildHomeDirections();
+    }
+
+    /**
+     * Mark the cells next to a door that the corridors can't reach without it, and everything
+     * connected to them, as the ghost house
+     */
+    private void findHouse(byte[] tiles, int[] queue) {
+        int corridor = cellOf(Ghost.HOUSE_EXIT_X, Ghost.HOUSE_EXIT_Y);
+        int tail = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (tiles[cell] != Maze.DOOR) continue;
+            for (int d = 0; d < 4; d++) {
+                int next = neighbors[cell * 4 + d];
+                if (next != NO_CELL && walkableIndex[next] >= 0 && !house[next]
+                        && getDistance(corridor, next) == UNREACHABLE) {
+                    house[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            for (int mask = exits[cell]; mask != 0; mask &= mask - 1) {
+                int next = neighbors[cell * 4 + Integer.numberOfTrailingZeros(mask)];
+                if (next != NO_CELL && !house[next]) {
+                    house[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    // Put the house cells at the start of the queue and return how many there are
+    private int houseCells(int[] queue) {
+        int count = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (house[cell]) {
+                queue[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * For each cell and heading: the exit other than straight back with the shortest way home
+     * (ties in UP, DOWN, LEFT, RIGHT order), the only exit, or back if it is a dead end
+     */
+    private void buildHomeDirections() {
+        for (int cell = 0; cell < CELLS; cell++) {
+            for (int heading = 0; heading < 5; heading++) {
+                Direction opposite = Direction.fromOrdinal(heading).getOpposite();
+                int mask = doorExits[cell];
+                if (opposite != Direction.NONE) {
+                    mask &= ~(1 << opposite.ordinal());
+                }
+                int best = opposite.ordinal();
+                int bestDistance = Integer.MAX_VALUE;
+                for (; mask != 0; mask &= mask - 1) {
+                    int d = Integer.numberOfTrailingZeros(mask);
+                    int next = neighbors[cell * 4 + d];
+                    int distance = next == NO_CELL ? UNREACHABLE : homeDistances[next];
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = d;
+                    }
+                }
+                homeDirections[cell * 5 + heading] = (byte) best;
+            }
+        }
+    }
+
+    /**
+     * Fill field with path lengths from the source cell, following the given exit masks.
+     * Exits are symmetric between walkable cells, so this is also the distance to the source.
+     */
+    private void breadthFirst(int source, byte[] exitMasks, short[] field, int[] queue) {
+        queue[0] = source;
+        breadthFirst(queue, 1, exitMasks, field);
+    }
+
+    /**
+     * Fill field with path lengths from the nearest of the first sourceCount cells in the queue
+     */
+    private void breadthFirst(int[] queue, int sourceCount, byte[] exitMasks, short[] field) {
+        Arrays.fill(field, (short) UNREACHABLE);
+        for (int i = 0; i < sourceCount; i++) {
+            field[queue[i]] = 0;
+        }
+        int head = 0;
+        int tail = sourceCount;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int mask = exitMasks[cell]; mask != 0; mask &= mask - 1) {
+                int next = neighbors[cell * 4 + Integer.numberOfTrailingZeros(mask)];
+                if (next != NO_CELL && field[next] == UNREACHABLE) {
+                    field[next] = (short) (field[cell] + 1);
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multi-source BFS over the whole grid, walls included, seeded with every cell of the
+     * main corridors (those reachable from the ghost house exit), so that targets in walls or
+     * inside the closed ghost house resolve to a cell the ghosts can actually reach
+     */
+    private void findNearestWalkable(int[] queue) {
+        Arrays.fill(nearestWalkable, NO_CELL);
+        int start = cellOf(Ghost.HOUSE_EXIT_X, Ghost.HOUSE_EXIT_Y);
+        int head = 0;
+        int tail = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (getDistance(start, cell) != UNREACHABLE) {
+                nearestWalkable[cell] = cell;
+                queue[tail++] = cell;
+            }
+        }
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % Maze.WIDTH;
+            int y = cell / Maze.WIDTH;
+            for (int d = 0; d < 4; d++) {
+                Direction dir = Direction.fromOrdinal(d);
+                int nextX = x + dir.getDx();
+                int nextY = y + dir.getDy();
+                if (nextX < 0 || nextX >= Maze.WIDTH || nextY < 0 || nextY >= Maze.HEIGHT) continue;
+                int next = cellOf(nextX, nextY);
+                if (nearestWalkable[next] == NO_CELL) {
+                    nearestWalkable[next] = nearestWalkable[cell];
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    public static NavGraph forMap(int mapIndex) {
+        return GRAPHS[mapIndex >= 0 && mapIndex < GRAPHS.length ? mapIndex : 0];
+    }
+
+    public static int cellOf(int x, int y) {
+        return y * Maze.WIDTH + x;
+    }
+
+    /**
+     * Exits from a cell as a bitmask of (1 << Direction.ordinal())
+     * @param throughDoor whether the ghost-house door may be crossed (eaten ghosts)
+     */
+    public int getExits(int cell, boolean throughDoor) {
+        return throughDoor ? doorExits[cell] : exits[cell];
+    }
+
+    /**
+     * Cell reached by moving one step, wrapping through the tunnel, or NO_CELL off the top/bottom edge
+     */
+    public int getNeighbor(int cell, int direction) {
+        return neighbors[cell * 4 + direction];
+    }
+
+    public boolean isJunction(int cell) {
+        return junction[cell];
+    }
+
+    /**
+     * Shortest path length between two cells for a ghost that may not cross the door,
+     * or UNREACHABLE if either cell is not walkable or there is no path
+     */
+    public int getDistance(int fromCell, int toCell) {
+        int from = walkableIndex[fromCell];
+        int to = walkableIndex[toCell];
+        if (from < 0 || to < 0) {
+            return UNREACHABLE;
+        }
+        return distances[from * walkableCount + to];
+    }
+
+    /**
+     * Shortest path length from a cell to the ghost house, crossing the door if needed
+     */
+    public int getHomeDistance(int cell) {
+        return homeDistances[cell];
+    }
+
+    /**
+     * Whether a cell is inside the ghost house, behind the door
+     */
+    public boolean isInHouse(int cell) {
+        return house[cell];
+    }
+
+    /**
+     * Direction an eaten ghost on this cell, moving in the given direction, takes to get home
+     */
+    public Direction getHomeDirection(int cell, Direction heading) {
+        return Direction.fromOrdinal(homeDirections[cell * 5 + heading.ordinal()]);
+    }
+
+    /**
+     * Corridor cell closest to any tile coordinate; coordinates off the board are clamped first
+     */
+    public int getNearestWalkable(int x, int y) {
+        x = Math.max(0, Math.min(Maze.WIDTH - 1, x));
+        y = Math.max(0, Math.min(Maze.HEIGHT - 1, y));
+        return nearestWalkable[cellOf(x, y)];
+    }
+}
@@ -1,7 +1,6 @@
 package pacman;
 
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
+import java.nio.ByteBuffer;
 
 /**
  * Represents the Pac-Man player character
@@ -10,9 +9,11 @@ public class PacMan {
     
     private double x, y;
     private int tileX, tileY;
+    // Position before the last update(), for render interpolation; not part of the game state
+    private double previousX, previousY;
     private Direction direction;
     private Direction nextDirection;
-    private GameBoard gameBoard;
+    private Maze maze;
     
     // Animation
     private double mouthAngle = 45;
@@ -25,28 +26,23 @@ public class PacMan {
     private double moveProgress = 0;
     private boolean moving = false;
     
-    // Appearance
-    private Color pacManColor = Color.YELLOW;
-    
     // Starting position
     public static final int START_TILE_X = 14;
     public static final int START_TILE_Y = 23;
     
-    public PacMan(GameBoard gameBoard) {
-        this(gameBoard, Color.YELLOW);
-    }
+    // Size of the state written by writeState()
+    static final int STATE_BYTES = 64;
     
-    public PacMan(GameBoard gameBoard, Color color) {
-        this.gameBoard = gameBoard;
-        this.pacManColor = color;
+    public PacMan(Maze maze) {
+        this.maze = maze;
         reset();
     }
     
     public void reset() {
         this.tileX = START_TILE_X;
         this.tileY = START_TILE_Y;
-        this.x = tileX * GameBoard.TILE_SIZE;
-        this.y = tileY * GameBoard.TILE_SIZE;
+        this.x = tileX * Maze.TILE_SIZE;
+        this.y = tileY * Maze.TILE_SIZE;
         this.direction = Direction.NONE;
         this.nextDirection = Direction.NONE;
         this.moving = false;
@@ -54,6 +50,8 @@ public class PacMan {
         this.alive = true;
         this.deathAnimationFrame = 0;
         this.mouthAngle = 45;
+        this.previousX = x;
+        this.previousY = y;
     }
     
     public void setDirection(Direction dir) {
@@ -61,6 +59,9 @@ public class PacMan {
     }
     
     public void update() {
+        previousX = x;
+        previousY = y;
+        
         if (!alive) {
             // Death animation
             deathAnimationFrame++;
@@ -72,7 +73,7 @@ public class PacMan {
             int nextTileX = tileX + nextDirection.getDx();
             int nextTileY = tileY + nextDirection.getDy();
             
-            if (gameBoard.canMove(nextTileX, nextTileY)) {
+            if (maze.canMove(nextTileX, nextTileY)) {
                 direction = nextDirection;
                 moving = true;
             }
@@ -88,13 +89,13 @@ public class PacMan {
         
         // Handle tunnel wrap-around
         if (nextTileX < 0) {
-            nextTileX = GameBoard.BOARD_WIDTH - 1;
-        } else if (nextTileX >= GameBoard.BOARD_WIDTH) {
+            nextTileX = Maze.WIDTH - 1;
+        } else if (nextTileX >= Maze.WIDTH) {
             nextTileX = 0;
         }
         
         // Check if can move
-        if (!gameBoard.canMove(nextTileX, nextTileY)) {
+        if (!maze.canMove(nextTileX, nextTileY)) {
             moving = false;
             return;
         }
@@ -103,18 +104,18 @@ public class PacMan {
         moveProgress += speed;
         
         // Update pixel position
-        double targetX = tileX * GameBoard.TILE_SIZE + direction.getDx() * moveProgress;
-        double targetY = tileY * GameBoard.TILE_SIZE + direction.getDy() * moveProgress;
+        double targetX = tileX * Maze.TILE_SIZE + direction.getDx() * moveProgress;
+        double targetY = tileY * Maze.TILE_SIZE + direction.getDy() * moveProgress;
         
         // Handle tunnel wrap-around for pixel position
         if (direction == Direction.LEFT && tileX == 0) {
-            targetX = tileX * GameBoard.TILE_SIZE - moveProgress;
-            if (targetX < -GameBoard.TILE_SIZE) {
-                targetX = (GameBoard.BOARD_WIDTH - 1) * GameBoard.TILE_SIZE;
+            targetX = tileX * Maze.TILE_SIZE - moveProgress;
+            if (targetX < -Maze.TILE_SIZE) {
+                targetX = (Maze.WIDTH - 1) * Maze.TILE_SIZE;
             }
-        } else if (direction == Direction.RIGHT && tileX == GameBoard.BOARD_WIDTH - 1) {
-            targetX = tileX * GameBoard.TILE_SIZE + moveProgress;
-            if (targetX > GameBoard.BOARD_WIDTH * GameBoard.TILE_SIZE) {
+        } else if (direction == Direction.RIGHT && tileX == Maze.WIDTH - 1) {
+            targetX = tileX * Maze.TILE_SIZE + moveProgress;
+            if (targetX > Maze.WIDTH * Maze.TILE_SIZE) {
                 targetX = 0;
             }
         }
@@ -123,11 +124,11 @@ public class PacMan {
         y = targetY;
         
         // Check if reached next tile
-        if (moveProgress >= GameBoard.TILE_SIZE) {
+        if (moveProgress >= Maze.TILE_SIZE) {
             tileX = nextTileX;
             tileY = nextTileY;
-            x = tileX * GameBoard.TILE_SIZE;
-            y = tileY * GameBoard.TILE_SIZE;
+            x = tileX * Maze.TILE_SIZE;
+            y = tileY * Maze.TILE_SIZE;
             moveProgress = 0;
         }
         
@@ -138,55 +139,6 @@ public class PacMan {
         }
     }
     
-    public void render(GraphicsContext gc) {
-        double centerX = x + GameBoard.TILE_SIZE / 2.0;
-        double centerY = y + GameBoard.TILE_SIZE / 2.0;
-        double radius = GameBoard.TILE_SIZE / 2.0 - 1;
-        
-        if (!alive) {
-            // Death animation - Pac-Man shrinking/disappearing
-            double shrinkFactor = Math.max(0, 1 - deathAnimationFrame / 30.0);
-            gc.setFill(pacManColor);
-            double deathAngle = deathAnimationFrame * 6;
-            gc.fillArc(centerX - radius * shrinkFactor, 
-                      centerY - radius * shrinkFactor,
-                      radius * 2 * shrinkFactor, 
-                      radius * 2 * shrinkFactor,
-                      90 + deathAngle, 
-                      360 - deathAngle * 2, 
-                      javafx.scene.shape.ArcType.ROUND);
-            return;
-        }
-        
-        gc.setFill(pacManColor);
-        
-        // Calculate rotation based on direction
-        double startAngle = mouthAngle;
-        double arcExtent = 360 - 2 * mouthAngle;
-        
-        switch (direction) {
-            case RIGHT:
-                startAngle = mouthAngle;
-                break;
-            case LEFT:
-                startAngle = 180 + mouthAngle;
-                break;
-            case UP:
-                startAngle = 90 + mouthAngle;
-                break;
-            case DOWN:
-                startAngle = 270 + mouthAngle;
-                break;
-            default:
-                startAngle = mouthAngle;
-        }
-        
-        gc.fillArc(centerX - radius, centerY - radius, 
-                   radius * 2, radius * 2,
-                   startAngle, arcExtent, 
-                   javafx.scene.shape.ArcType.ROUND);
-    }
-    
     public int getTileX() {
         return tileX;
     }
@@ -203,6 +155,17 @@ public class PacMan {
         return y;
     }
     
+    /**
+     * Position to draw at, a fraction alpha (0..1) of the way from the previous tick to this one
+     */
+    public double getRenderX(double alpha) {
+        return Maze.interpolateX(previousX, x, alpha);
+    }
+    
+    public double getRenderY(double alpha) {
+        return previousY + (y - previousY) * alpha;
+    }
+    
     public Direction getDirection() {
         return direction;
     }
@@ -220,6 +183,10 @@ public class PacMan {
         deathAnimationFrame = 0;
     }
     
+    public double getMouthAngle() {
+        return mouthAngle;
+    }
+    
     public int getDeathAnimationFrame() {
         return deathAnimationFrame;
     }
@@ -227,4 +194,38 @@ public class PacMan {
     public boolean isDeathAnimationComplete() {
         return deathAnimationFrame > 60;
     }
+    
+    void writeState(ByteBuffer buffer) {
+        buffer.putDouble(x);
+        buffer.putDouble(y);
+        buffer.putInt(tileX);
+        buffer.putInt(tileY);
+        buffer.put((byte) direction.ordinal());
+        buffer.put((byte) nextDirection.ordinal());
+        buffer.putDouble(mouthAngle);
+        buffer.putDouble(mouthDirection);
+        buffer.put((byte) (alive ? 1 : 0));
+        buffer.putInt(deathAnimationFrame);
+        buffer.putDouble(speed);
+        buffer.putDouble(moveProgress);
+        buffer.put((byte) (moving ? 1 : 0));
+    }
+    
+    void readState(ByteBuffer buffer) {
+        x = buffer.getDouble();
+        y = buffer.getDouble();
+        tileX = buffer.getInt();
+        tileY = buffer.getInt();
+        direction = Direction.fromOrdinal(buffer.get());
+        nextDirection = Direction.fromOrdinal(buffer.get());
+        mouthAngle = buffer.getDouble();
+        mouthDirection = buffer.getDouble();
+        alive = buffer.get() != 0;
+        deathAnimationFrame = buffer.getInt();
+        speed = buffer.getDouble();
+        moveProgress = buffer.getDouble();
+        moving = buffer.get() != 0;
+        previousX = x;
+        previousY = y;
+    }
 }
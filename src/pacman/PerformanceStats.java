@@ -0,0 +1,162 @@
+package pacman;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Frame and tick timings of the running game, recorded by GameController's loop:
+ * the interval between frames, each tick's update() and, inside it, collision checks and sound
+ * dispatch, and the rendering of each frame. Also counts late frames, dropped ticks and
+ * garbage collections since the last reset(). Shown by the stats overlay and written to a file on exit.
+ */
+public class PerformanceStats {
+
+    private static final long FPS_WINDOW = 1_000_000_000L; // getFps() covers about the last second of frames
+
+    private final TimingHistogram frames = new TimingHistogram("frame");
+    private final TimingHistogram updates = new TimingHistogram("update");
+    private final TimingHistogram collisions = new TimingHistogram("collisions");
+    private final TimingHistogram sounds = new TimingHistogram("sound");
+    private final TimingHistogram renders = new TimingHistogram("render");
+    private final TimingHistogram[] all = {frames, updates, collisions, sounds, renders};
+
+    private long lateFrames = 0;   // pulses that had to run more than one tick to catch up
+    private long droppedTicks = 0; // ticks discarded because catch-up hit the limit
+    private long startNanos;
+    private long gcCountAtStart;
+    private long gcMillisAtStart;
+    private long windowNanos;
+    private int windowFrames;
+    private double recentFps;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    public PerformanceStats() {
+        reset();
+    }
+
+    public void reset() {
+        for (TimingHistogram histogram : all) {
+            histogram.reset();
+        }
+        lateFrames = 0;
+        droppedTicks = 0;
+        windowNanos = 0;
+        windowFrames = 0;
+        recentFps = 0;
+        startNanos = System.nanoTime();
+        gcCountAtStart = totalGcCount();
+        gcMillisAtStart = totalGcMillis();
+    }
+
+    public TimingHistogram getFrames() {
+        return frames;
+    }
+
+    /**
+     * Record the interval since the previous frame, which also counts the frame towards getFps()
+     */
+    public void recordFrame(long elapsedNanos) {
+        frames.record(elapsedNanos);
+        windowNanos += elapsedNanos;
+        windowFrames++;
+        if (windowNanos >= FPS_WINDOW) {
+            recentFps = windowFrames * 1e9 / windowNanos;
+            windowNanos = 0;
+            windowFrames = 0;
+        }
+    }
+
+    public TimingHistogram getUpdates() {
+        return updates;
+    }
+
+    public TimingHistogram getCollisions() {
+        return collisions;
+    }
+
+    public TimingHistogram getSounds() {
+        return sounds;
+    }
+
+    public TimingHistogram getRenders() {
+        return renders;
+    }
+
+    void countLateFrame() {
+        lateFrames++;
+    }
+
+    void addDroppedTicks(long ticks) {
+        droppedTicks += ticks;
+    }
+
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    /**
+     * Frames per second over the last full second of frames, or the average until a second has passed
+     */
+    public double getFps() {
+        return recentFps > 0 ? recentFps : getAverageFps();
+    }
+
+    /**
+     * Average frames per second since the last reset()
+     */
+    public double getAverageFps() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0 : frames.getCount() * 1e9 / elapsed;
+    }
+
+    public long getGcCount() {
+        return totalGcCount() - gcCountAtStart;
+    }
+
+    public long getGcMillis() {
+        return totalGcMillis() - gcMillisAtStart;
+    }
+
+    private long totalGcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(0, collector.getCollectionCount());
+        }
+        return total;
+    }
+
+    private long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Multi-line text report of everything recorded
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%.1f fps (%.1f average), %d late frames, %d dropped ticks%n",
+                getFps(), getAverageFps(), lateFrames, droppedTicks));
+        sb.append(String.format("GC: %d collections, %d ms%n", getGcCount(), getGcMillis()));
+        for (TimingHistogram histogram : all) {
+            sb.append(histogram.summary()).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    public void writeTo(Path file) throws IOException {
+        Files.writeString(file, report());
+    }
+}
@@ -0,0 +1,214 @@
+package pacman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Recording of one game session: the settings and seed it started with, followed by
+ * every direction change tagged with the simulation tick it was applied on.
+ *
+ * Inputs are stored delta-encoded, one varint per input holding (ticksSincePrevious << 3 | direction),
+ * so a minute of play usually fits in a few hundred bytes. The trailer keeps the final tick,
+ * score and state checksum so playback can tell whether the simulation still behaves the same.
+ */
+public class Replay {
+
+    private static final int MAGIC = 0x504D5250; // "PMRP"
+    private static final int VERSION = 1;
+
+    // Session settings
+    private final long seed;
+    private final int mapIndex;
+    private final int difficulty;
+    private final int characterIndex;
+
+    // Encoded input stream
+    private byte[] inputs = new byte[256];
+    private int inputBytes = 0;
+    private int inputCount = 0;
+    private long lastInputTick = 0;
+
+    // Trailer, filled in by finish()
+    private long endTick = 0;
+    private int finalScore = 0;
+    private long finalChecksum = 0;
+
+    public Replay(long seed, int mapIndex, int difficulty, int characterIndex) {
+        this.seed = seed;
+        this.mapIndex = mapIndex;
+        this.difficulty = difficulty;
+        this.characterIndex = characterIndex;
+    }
+
+    /**
+     * Append an input applied on the given tick. Ticks must not go backwards.
+     */
+    public void record(long tick, Direction direction) {
+        if (tick < lastInputTick) {
+            throw new IllegalArgumentException("Replay input at tick " + tick + " is before tick " + lastInputTick);
+        }
+        ensureCapacity(10);
+        inputBytes = writeVarLong(inputs, inputBytes, ((tick - lastInputTick) << 3) | direction.ordinal());
+        lastInputTick = tick;
+        inputCount++;
+    }
+
+    /**
+     * Store the end state of the recorded game, used by ReplayPlayer to verify playback
+     */
+    public void finish(Simulation simulation) {
+        endTick = simulation.getTick();
+        finalScore = simulation.getScore();
+        finalChecksum = simulation.checksum();
+    }
+
+    private void ensureCapacity(int extra) {
+        if (inputBytes + extra > inputs.length) {
+            inputs = Arrays.copyOf(inputs, Math.max(inputs.length * 2, inputBytes + extra));
+        }
+    }
+
+    // Codec
+
+    public void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    public static Replay load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(seed);
+        out.writeByte(mapIndex);
+        out.writeByte(difficulty);
+        out.writeByte(characterIndex);
+        out.writeInt(inputCount);
+        out.writeInt(inputBytes);
+        out.write(inputs, 0, inputBytes);
+        out.writeLong(endTick);
+        out.writeInt(finalScore);
+        out.writeLong(finalChecksum);
+        out.flush();
+    }
+
+    public static Replay read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        Replay replay = new Replay(in.readLong(), in.readUnsignedByte(), in.readUnsignedByte(), in.readUnsignedByte());
+        replay.inputCount = in.readInt();
+        replay.inputBytes = in.readInt();
+        replay.inputs = new byte[Math.max(replay.inputBytes, 16)];
+        in.readFully(replay.inputs, 0, replay.inputBytes);
+        replay.endTick = in.readLong();
+        replay.finalScore = in.readInt();
+        replay.finalChecksum = in.readLong();
+
+        // Recover the last input tick so recording can continue after loading
+        int position = 0;
+        for (int i = 0; i < replay.inputCount; i++) {
+            long value = readVarLong(replay.inputs, position);
+            position = nextPosition(replay.inputs, position);
+            replay.lastInputTick += value >>> 3;
+        }
+        return replay;
+    }
+
+    static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    static long readVarLong(byte[] buffer, int position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static int nextPosition(byte[] buffer, int position) {
+        while ((buffer[position++] & 0x80) != 0) {
+            // skip continuation bytes
+        }
+        return position;
+    }
+
+    static Direction decodeDirection(long value) {
+        return Direction.fromOrdinal((int) (value & 0x7));
+    }
+
+    // Accessors
+
+    byte[] getInputData() {
+        return inputs;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Size of the encoded input stream in bytes
+     */
+    public int getInputBytes() {
+        return inputBytes;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getMapIndex() {
+        return mapIndex;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    public int getCharacterIndex() {
+        return characterIndex;
+    }
+
+    public long getEndTick() {
+        return endTick;
+    }
+
+    public int getFinalScore() {
+        return finalScore;
+    }
+
+    public long getFinalChecksum() {
+        return finalChecksum;
+    }
+}
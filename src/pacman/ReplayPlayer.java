@@ -0,0 +1,105 @@
+package pacman;
+
+/**
+ * Feeds a recorded Replay back into a Simulation.
+ * Either step it once per frame for real-time playback (GameController does this),
+ * or call runToEnd() to re-simulate headless as fast as the CPU allows.
+ */
+public class ReplayPlayer {
+
+    private final Replay replay;
+    private final Simulation simulation;
+
+    // Decoding cursor into the replay's input stream
+    private int position;
+    private int remaining;
+    private long nextInputTick;
+    private Direction nextDirection;
+
+    public ReplayPlayer(Replay replay) {
+        this(replay, new Simulation(replay.getMapIndex(), replay.getDifficulty(), replay.getSeed()));
+    }
+
+    /**
+     * Play the replay on an existing simulation, which is restarted with the replay's seed.
+     * The simulation must be on the replay's map and difficulty.
+     */
+    public ReplayPlayer(Replay replay, Simulation simulation) {
+        this.replay = replay;
+        this.simulation = simulation;
+        rewind();
+    }
+
+    public void rewind() {
+        simulation.restart(replay.getSeed());
+        position = 0;
+        remaining = replay.getInputCount();
+        nextInputTick = 0;
+        advanceCursor();
+    }
+
+    private void advanceCursor() {
+        if (remaining == 0) {
+            nextInputTick = Long.MAX_VALUE;
+            nextDirection = null;
+            return;
+        }
+        byte[] data = replay.getInputData();
+        long value = Replay.readVarLong(data, position);
+        position = Replay.nextPosition(data, position);
+        remaining--;
+        nextInputTick += value >>> 3;
+        nextDirection = Replay.decodeDirection(value);
+    }
+
+    /**
+     * Recorded input for the given tick, or null if the player pressed nothing on it
+     */
+    public Direction nextInput(long tick) {
+        Direction input = null;
+        // Only one input is recorded per tick, but skip any stale ones defensively
+        while (nextInputTick <= tick) {
+            input = nextDirection;
+            advanceCursor();
+        }
+        return input;
+    }
+
+    /**
+     * Advance the simulation by one tick using the recorded input
+     * @return the simulation events for this tick
+     */
+    public int step() {
+        return simulation.step(nextInput(simulation.getTick() + 1));
+    }
+
+    public boolean isFinished() {
+        return simulation.isGameOver() || simulation.getTick() >= replay.getEndTick();
+    }
+
+    /**
+     * Re-simulate the rest of the recording without any rendering or pacing
+     */
+    public void runToEnd() {
+        while (!isFinished()) {
+            step();
+        }
+    }
+
+    /**
+     * Whether playback ended in exactly the state that was recorded
+     */
+    public boolean matchesRecording() {
+        return simulation.getTick() == replay.getEndTick()
+                && simulation.getScore() == replay.getFinalScore()
+                && simulation.checksum() == replay.getFinalChecksum();
+    }
+
+    public Replay getReplay() {
+        return replay;
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+}
@@ -0,0 +1,471 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Headless game engine holding the maze, Pac-Man, the ghosts and the scoring rules.
+ * It has no JavaFX dependency: each call to step() advances the game by one tick
+ * and reports what happened as a bitmask of EVENT_* flags, which GameController
+ * turns into sounds, HUD updates and dialogs.
+ */
+public class Simulation {
+
+    // Points
+    public static final int DOT_POINTS = 10;
+    public static final int POWER_PELLET_POINTS = 50;
+    public static final int[] GHOST_POINTS = {200, 400, 800, 1600};
+
+    // Events reported by step()
+    public static final int EVENT_DOT_EATEN = 1;
+    public static final int EVENT_POWER_PELLET = 1 << 1;
+    public static final int EVENT_GHOST_EATEN = 1 << 2;
+    public static final int EVENT_PACMAN_DIED = 1 << 3;
+    public static final int EVENT_LIFE_LOST = 1 << 4;
+    public static final int EVENT_LEVEL_COMPLETE = 1 << 5;
+    public static final int EVENT_GAME_OVER = 1 << 6;
+
+    // Snapshot layout: header, game state, then maze, Pac-Man and the four ghosts
+    private static final int SNAPSHOT_MAGIC = 0x504D534E; // "PMSN"
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 8 + 8 + 4 + 4 + 4 + 4 + 1;
+    public static final int SNAPSHOT_BYTES = HEADER_BYTES + Maze.STATE_BYTES + PacMan.STATE_BYTES + 4 * Ghost.STATE_BYTES;
+
+    private final Maze maze;
+    private final PacMan pacMan;
+    private final Ghost[] ghosts;
+    // What the ghost brains see, refreshed each tick
+    private final WorldView world;
+    private final int difficulty; // 0=Easy, 1=Normal, 2=Hard
+    private final double ghostSpeedMultiplier;
+    // Extra ghosts of the many-ghost mode, or null
+    private GhostSwarm swarm;
+
+    // Single random source for the whole game: same seed + same inputs = same game
+    private final GameRandom random;
+    private long seed;
+
+    // Game state
+    private int score = 0;
+    private int lives = 3;
+    private int level = 1;
+    private int ghostsEatenCombo = 0;
+    private boolean gameOver = false;
+
+    // Optional timing of the collision pass, for the stats overlay
+    private TimingHistogram collisionTimes;
+    private long tick = 0;
+
+    public Simulation(int mapIndex, int difficulty) {
+        this(new Maze(mapIndex), difficulty, System.nanoTime());
+    }
+
+    public Simulation(int mapIndex, int difficulty, long seed) {
+        this(new Maze(mapIndex), difficulty, seed);
+    }
+
+    public Simulation(Maze maze, int difficulty) {
+        this(maze, difficulty, System.nanoTime());
+    }
+
+    public Simulation(Maze maze, int difficulty, long seed) {
+        this(maze, difficulty, seed, getGhostSpeedMultiplier(difficulty));
+    }
+
+    /**
+     * Constructor overriding the ghost speed the difficulty would pick, for tuning runs
+     */
+    public Simulation(Maze maze, int difficulty, long seed, double ghostSpeedMultiplier) {
+        this.maze = maze;
+        this.difficulty = difficulty;
+        this.ghostSpeedMultiplier = ghostSpeedMultiplier;
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+        this.pacMan = new PacMan(maze);
+        this.ghosts = new Ghost[4];
+
+        ghosts[0] = new Ghost(Ghost.GhostType.BLINKY, maze, ghostSpeedMultiplier, random);
+        ghosts[1] = new Ghost(Ghost.GhostType.PINKY, maze, ghostSpeedMultiplier, random);
+        ghosts[2] = new Ghost(Ghost.GhostType.INKY, maze, ghostSpeedMultiplier, random);
+        ghosts[3] = new Ghost(Ghost.GhostType.CLYDE, maze, ghostSpeedMultiplier, random);
+        this.world = new WorldView(ghosts);
+
+        this.lives = getStartingLives(difficulty);
+    }
+
+    public static int getStartingLives(int difficulty) {
+        switch (difficulty) {
+            case 0: // Easy
+                return 5;
+            case 2: // Hard
+                return 2;
+            default: // Normal
+                return 3;
+        }
+    }
+
+    public static double getGhostSpeedMultiplier(int difficulty) {
+        switch (difficulty) {
+            case 0: // Easy
+                return 0.7;
+            case 2: // Hard
+                return 1.3;
+            default: // Normal
+                return 1.0;
+        }
+    }
+
+    /**
+     * Start over from level 1 with a fresh maze, replaying the same seed
+     */
+    public void restart() {
+        restart(seed);
+    }
+
+    /**
+     * Start over from level 1 with a fresh maze and a new seed
+     */
+    public void restart(long seed) {
+        this.seed = seed;
+        random.setState(seed);
+        score = 0;
+        lives = getStartingLives(difficulty);
+        level = 1;
+        gameOver = false;
+        ghostsEatenCombo = 0;
+        tick = 0;
+
+        maze.init();
+        resetPositions();
+    }
+
+    /**
+     * Advance the game by one tick.
+     * @param input new direction requested by the player, or null for no new input
+     * @return bitmask of EVENT_* flags raised during this tick
+     */
+    public int step(Direction input) {
+        if (gameOver) {
+            return 0;
+        }
+        tick++;
+
+        if (input != null) {
+            pacMan.setDirection(input);
+        }
+
+        if (!pacMan.isAlive()) {
+            // Still need to update PacMan for death animation
+            pacMan.update();
+            if (pacMan.isDeathAnimationComplete()) {
+                return handleDeath();
+            }
+            return 0;
+        }
+
+        int events = 0;
+
+        // Update Pac-Man
+        pacMan.update();
+
+        // Check for dot eating
+        int px = pacMan.getTileX();
+        int py = pacMan.getTileY();
+
+        if (maze.isDot(px, py)) {
+            maze.eatDot(px, py);
+            score += DOT_POINTS;
+            events |= EVENT_DOT_EATEN;
+        } else if (maze.isPowerPellet(px, py)) {
+            maze.eatDot(px, py);
+            score += POWER_PELLET_POINTS;
+            events |= EVENT_POWER_PELLET;
+            activatePowerMode();
+        }
+
+        // Check for level completion
+        if (maze.getDotsRemaining() == 0) {
+            nextLevel();
+            return events | EVENT_LEVEL_COMPLETE;
+        }
+
+        // Update ghosts, all deciding on the positions at the start of their move
+        world.update(maze, pacMan, ghosts);
+        for (Ghost ghost : ghosts) {
+            ghost.update(world);
+        }
+        if (swarm != null) {
+            swarm.update(world);
+        }
+
+        // Check collisions
+        if (collisionTimes == null) {
+            return events | checkCollisions();
+        }
+        long start = System.nanoTime();
+        events |= checkCollisions();
+        collisionTimes.record(System.nanoTime() - start);
+        return events;
+    }
+
+    /**
+     * Many-ghost mode: add this many ghosts on top of the four arcade ones, or remove them with 0.
+     * They are not part of snapshots, so replays and snapshots of such a game don't restore them.
+     */
+    public void setSwarmSize(int count) {
+        swarm = count > 0 ? new GhostSwarm(count, maze, ghostSpeedMultiplier, random) : null;
+    }
+
+    /**
+     * The extra ghosts of the many-ghost mode, or null
+     */
+    public GhostSwarm getSwarm() {
+        return swarm;
+    }
+
+    /**
+     * Record how long each collision pass takes, or stop recording with null
+     */
+    void setCollisionTimes(TimingHistogram collisionTimes) {
+        this.collisionTimes = collisionTimes;
+    }
+
+    private void activatePowerMode() {
+        ghostsEatenCombo = 0;
+        for (Ghost ghost : ghosts) {
+            ghost.setFrightened(true);
+        }
+        if (swarm != null) {
+            swarm.frighten();
+        }
+    }
+
+    private int checkCollisions() {
+        // A ghost touches Pac-Man on the same tile or within 0.7 tiles; each is resolved once,
+        // and nothing more happens in the tick once Pac-Man has died
+        int events = 0;
+        int pacX = pacMan.getTileX();
+        int pacY = pacMan.getTileY();
+        double reach = Maze.TILE_SIZE * 0.7;
+
+        for (Ghost ghost : ghosts) {
+            if (ghost.isInGhostHouse()) continue;
+            if ((ghost.getTileX() == pacX && ghost.getTileY() == pacY)
+                    || (Math.abs(pacMan.getX() - ghost.getX()) < reach && Math.abs(pacMan.getY() - ghost.getY()) < reach)) {
+                events |= collide(ghost);
+                if ((events & EVENT_PACMAN_DIED) != 0) {
+                    return events;
+                }
+            }
+        }
+
+        if (swarm != null) {
+            // Either sprite can be up to a tile off its own tile, so only ghosts within two tiles can touch
+            CollisionGrid grid = swarm.getCollisionGrid();
+            for (int y = pacY - 2; y <= pacY + 2; y++) {
+                for (int x = pacX - 2; x <= pacX + 2; x++) {
+                    int i = grid.first(x, y);
+                    while (i != CollisionGrid.NONE) {
+                        // Read ahead: eating the ghost takes it out of the grid
+                        int following = grid.next(i);
+                        if ((x == pacX && y == pacY) || (Math.abs(pacMan.getX() - swarm.getX(i)) < reach
+                                && Math.abs(pacMan.getY() - swarm.getY(i)) < reach)) {
+                            events |= collideSwarm(i);
+                            if ((events & EVENT_PACMAN_DIED) != 0) {
+                                return events;
+                            }
+                        }
+                        i = following;
+                    }
+                }
+            }
+        }
+        return events;
+    }
+
+    private int collideSwarm(int i) {
+        if (swarm.isFrightened(i)) {
+            swarm.setEaten(i);
+            score += GHOST_POINTS[Math.min(ghostsEatenCombo, 3)];
+            ghostsEatenCombo++;
+            return EVENT_GHOST_EATEN;
+        }
+        pacMan.die();
+        return EVENT_PACMAN_DIED;
+    }
+
+    private int collide(Ghost ghost) {
+        if (ghost.isFrightened() && !ghost.isEaten()) {
+            // Eat the ghost
+            ghost.setEaten();
+            score += GHOST_POINTS[Math.min(ghostsEatenCombo, 3)];
+            ghostsEatenCombo++;
+            return EVENT_GHOST_EATEN;
+        } else if (!ghost.isEaten()) {
+            // Pac-Man dies
+            pacMan.die();
+            return EVENT_PACMAN_DIED;
+        }
+        return 0;
+    }
+
+    private int handleDeath() {
+        lives--;
+
+        if (lives <= 0) {
+            gameOver = true;
+            return EVENT_LIFE_LOST | EVENT_GAME_OVER;
+        }
+        resetPositions();
+        return EVENT_LIFE_LOST;
+    }
+
+    private void nextLevel() {
+        level++;
+
+        // Reset board with all dots
+        maze.reset();
+        resetPositions();
+    }
+
+    private void resetPositions() {
+        pacMan.reset();
+        for (Ghost ghost : ghosts) {
+            ghost.reset();
+        }
+        if (swarm != null) {
+            swarm.reset();
+        }
+    }
+
+    public Maze getMaze() {
+        return maze;
+    }
+
+    public PacMan getPacMan() {
+        return pacMan;
+    }
+
+    public Ghost[] getGhosts() {
+        return ghosts;
+    }
+
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Ghost speed multiplier this game runs with, the difficulty's unless overridden
+     */
+    public double getGhostSpeedMultiplier() {
+        return ghostSpeedMultiplier;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLives() {
+        return lives;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Write the complete game state at the buffer's position.
+     * Needs SNAPSHOT_BYTES of space and allocates nothing.
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.put((byte) difficulty);
+        buffer.putLong(seed);
+        buffer.putLong(random.getState());
+        buffer.putLong(tick);
+        buffer.putInt(score);
+        buffer.putInt(lives);
+        buffer.putInt(level);
+        buffer.putInt(ghostsEatenCombo);
+        buffer.put((byte) (gameOver ? 1 : 0));
+        maze.writeState(buffer);
+        pacMan.writeState(buffer);
+        for (Ghost ghost : ghosts) {
+            ghost.writeState(buffer);
+        }
+    }
+
+    /**
+     * Restore a state written by writeSnapshot(), reading from the buffer's position.
+     * The snapshot must come from a simulation with the same difficulty.
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        if (buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a simulation snapshot");
+        }
+        int snapshotDifficulty = buffer.get();
+        if (snapshotDifficulty != difficulty) {
+            throw new IllegalArgumentException("Snapshot difficulty " + snapshotDifficulty + " does not match " + difficulty);
+        }
+        seed = buffer.getLong();
+        random.setState(buffer.getLong());
+        tick = buffer.getLong();
+        score = buffer.getInt();
+        lives = buffer.getInt();
+        level = buffer.getInt();
+        ghostsEatenCombo = buffer.getInt();
+        gameOver = buffer.get() != 0;
+        maze.readState(buffer);
+        pacMan.readState(buffer);
+        for (Ghost ghost : ghosts) {
+            ghost.readState(buffer);
+        }
+    }
+
+    /**
+     * Hash of the observable game state, for comparing two runs tick by tick
+     */
+    public long checksum() {
+        long h = 17;
+        h = h * 31 + tick;
+        h = h * 31 + score;
+        h = h * 31 + lives;
+        h = h * 31 + level;
+        h = h * 31 + maze.getDotsRemaining();
+        h = h * 31 + random.getState();
+        h = h * 31 + Double.doubleToLongBits(pacMan.getX());
+        h = h * 31 + Double.doubleToLongBits(pacMan.getY());
+        h = h * 31 + pacMan.getDirection().ordinal();
+        h = h * 31 + (pacMan.isAlive() ? 1 : 0);
+        for (Ghost ghost : ghosts) {
+            h = h * 31 + Double.doubleToLongBits(ghost.getX());
+            h = h * 31 + Double.doubleToLongBits(ghost.getY());
+            h = h * 31 + ghost.getDirection().ordinal();
+            h = h * 31 + (ghost.isFrightened() ? 1 : 0);
+            h = h * 31 + (ghost.isEaten() ? 2 : 0);
+            h = h * 31 + (ghost.isInGhostHouse() ? 4 : 0);
+        }
+        if (swarm != null) {
+            for (int i = 0; i < swarm.getCount(); i++) {
+                h = h * 31 + Float.floatToIntBits(swarm.getX(i));
+                h = h * 31 + Float.floatToIntBits(swarm.getY(i));
+                h = h * 31 + swarm.getDirection(i).ordinal();
+            }
+        }
+        return h;
+    }
+}
@@ -0,0 +1,282 @@
+package pacman;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Alternative to GameBoard.render() that keeps the drawing off the JavaFX Application Thread.
+ * On the FX thread, present() only copies the tile codes and sprite positions of the current
+ * tick (about a kilobyte) and swaps in the last finished frame. A worker thread rasterizes the
+ * board from the same wall layer, sprite atlas and tile codes GameBoard uses, straight into the
+ * IntBuffer behind a PixelBuffer, optionally scaled up by an integer factor.
+ *
+ * Frames are double buffered, plus one: JavaFX may still be uploading the buffer that was on
+ * screen until the last swap, so the worker never writes to it until the next pulse.
+ */
+public class SoftwareRenderer {
+
+    private static final int BUFFERS = 3;
+
+    private final int scale;
+    private final int width;
+    private final int height;
+    private final IntBuffer[] buffers = new IntBuffer[BUFFERS];
+    private final PixelBuffer<IntBuffer>[] pixelBuffers;
+    private final WritableImage[] images = new WritableImage[BUFFERS];
+    private final FrameState[] states = new FrameState[BUFFERS];
+    private final ImageView view;
+    private final ExecutorService worker;
+
+    // FX thread only
+    private final Maze maze;
+    private SpriteAtlas atlas;
+    private int front = 0;
+    private int retired = -1;
+    private int drawing = -1;
+    private Future<?> job;
+
+    // Worker only: base resolution frame and the wall layer of the current map
+    private final int[] pixels;
+    private final int[] scaledRow;
+    private int[] staticLayer;
+    private int layerMapIndex = -1;
+
+    /**
+     * Everything the worker needs to draw one frame, captured on the FX thread
+     */
+    private static class FrameState {
+        final byte[] tiles = new byte[Maze.WIDTH * Maze.HEIGHT];
+        int mapIndex;
+        SpriteAtlas atlas;
+        int spriteCount;
+        // Grown for the many-ghost mode; only ever touched while the worker isn't drawing this state
+        int[] spriteCell = new int[8];
+        int[] spriteX = new int[8];
+        int[] spriteY = new int[8];
+    }
+
+    public SoftwareRenderer(Maze maze, Color pacManColor) {
+        this(maze, pacManColor, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public SoftwareRenderer(Maze maze, Color pacManColor, int scale) {
+        this.maze = maze;
+        this.atlas = SpriteAtlas.forStyle(Maze.TILE_SIZE, pacManColor);
+        this.scale = Math.max(1, scale);
+        this.width = Maze.WIDTH * Maze.TILE_SIZE;
+        this.height = Maze.HEIGHT * Maze.TILE_SIZE;
+        this.pixels = new int[width * height];
+        this.scaledRow = new int[width * this.scale];
+
+        int outputWidth = width * this.scale;
+        int outputHeight = height * this.scale;
+        // Generic array creation: the cast is safe as every element is set to a PixelBuffer<IntBuffer> below
+        @SuppressWarnings("unchecked")
+        PixelBuffer<IntBuffer>[] created = (PixelBuffer<IntBuffer>[]) new PixelBuffer<?>[BUFFERS];
+        pixelBuffers = created;
+        for (int i = 0; i < BUFFERS; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(outputWidth * outputHeight * 4)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            pixelBuffers[i] = new PixelBuffer<>(outputWidth, outputHeight, buffers[i],
+                    PixelFormat.getIntArgbPreInstance());
+            images[i] = new WritableImage(pixelBuffers[i]);
+            states[i] = new FrameState();
+        }
+        view = new ImageView(images[front]);
+
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "software-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The node showing the rendered frames; put it where the GameBoard canvas would go
+     */
+    public ImageView getView() {
+        return view;
+    }
+
+    public void setPacManColor(Color color) {
+        atlas = SpriteAtlas.forStyle(Maze.TILE_SIZE, color);
+    }
+
+    /**
+     * Called on the FX thread once per display frame: shows the newest finished frame,
+     * and hands the current state to the worker if it is idle
+     * @param alpha how far the display is between the previous and current tick, 0..1
+     */
+    public void present(Simulation simulation, double alpha) {
+        if (job != null && job.isDone()) {
+            try {
+                job.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Software rendering failed", e.getCause());
+            }
+            pixelBuffers[drawing].updateBuffer(buffer -> null);
+            view.setImage(images[drawing]);
+            retired = front;
+            front = drawing;
+            drawing = -1;
+            job = null;
+        }
+
+        if (job == null) {
+            int next = 0;
+            while (next == front || next == retired) {
+                next++;
+            }
+            capture(simulation, alpha, next);
+            drawing = next;
+            int index = next;
+            job = worker.submit(() -> rasterize(index));
+        }
+    }
+
+    /**
+     * Stop the worker; the renderer can't be used afterwards
+     */
+    public void dispose() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Copy what the next frame shows into the state of a buffer. FX thread.
+     */
+    void capture(Simulation simulation, double alpha, int index) {
+        FrameState state = states[index];
+        System.arraycopy(maze.getTileData(), 0, state.tiles, 0, state.tiles.length);
+        state.mapIndex = maze.getMapIndex();
+        state.atlas = atlas;
+        atlas.prepare(SpriteAtlas.DOT_CELL);
+        atlas.prepare(SpriteAtlas.POWER_PELLET_CELL);
+
+        state.spriteCount = 0;
+        for (Ghost ghost : simulation.getGhosts()) {
+            addSprite(state, atlas.getGhostCell(ghost), ghost.getRenderX(alpha), ghost.getRenderY(alpha));
+        }
+        GhostSwarm swarm = simulation.getSwarm();
+        if (swarm != null) {
+            for (int i = 0, count = swarm.getCount(); i < count; i++) {
+                addSprite(state, atlas.getGhostCell(swarm, i), swarm.getRenderX(i, alpha), swarm.getRenderY(i, alpha));
+            }
+        }
+        PacMan pacMan = simulation.getPacMan();
+        addSprite(state, atlas.getPacManCell(pacMan), pacMan.getRenderX(alpha), pacMan.getRenderY(alpha));
+    }
+
+    private void addSprite(FrameState state, int cell, double x, double y) {
+        if (state.spriteCount == state.spriteCell.length) {
+            int capacity = state.spriteCount * 2;
+            state.spriteCell = Arrays.copyOf(state.spriteCell, capacity);
+            state.spriteX = Arrays.copyOf(state.spriteX, capacity);
+            state.spriteY = Arrays.copyOf(state.spriteY, capacity);
+        }
+        // Cells are rasterized lazily, and only here on the FX thread
+        state.atlas.prepare(cell);
+        state.spriteCell[state.spriteCount] = cell;
+        state.spriteX[state.spriteCount] = (int) Math.round(x);
+        state.spriteY[state.spriteCount] = (int) Math.round(y);
+        state.spriteCount++;
+    }
+
+    /**
+     * Draw a captured state into its buffer. Worker thread.
+     */
+    void rasterize(int index) {
+        FrameState state = states[index];
+        if (staticLayer == null || layerMapIndex != state.mapIndex) {
+            staticLayer = GameBoard.rasterizeStaticTiles(state.tiles);
+            layerMapIndex = state.mapIndex;
+        }
+        System.arraycopy(staticLayer, 0, pixels, 0, pixels.length);
+
+        SpriteAtlas frameAtlas = state.atlas;
+        for (int cell = 0; cell < state.tiles.length; cell++) {
+            int tile = state.tiles[cell];
+            if (tile == Maze.DOT || tile == Maze.POWER_PELLET) {
+                blit(frameAtlas, tile == Maze.DOT ? SpriteAtlas.DOT_CELL : SpriteAtlas.POWER_PELLET_CELL,
+                        (cell % Maze.WIDTH) * Maze.TILE_SIZE, (cell / Maze.WIDTH) * Maze.TILE_SIZE);
+            }
+        }
+        for (int i = 0; i < state.spriteCount; i++) {
+            blit(frameAtlas, state.spriteCell[i], state.spriteX[i], state.spriteY[i]);
+        }
+
+        IntBuffer target = buffers[index];
+        if (scale == 1) {
+            target.put(0, pixels, 0, pixels.length);
+            return;
+        }
+        // Nearest neighbor zoom, one expanded row written scale times
+        int outputWidth = width * scale;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int argb = pixels[row + x];
+                int start = x * scale;
+                for (int i = 0; i < scale; i++) {
+                    scaledRow[start + i] = argb;
+                }
+            }
+            for (int i = 0; i < scale; i++) {
+                target.put((y * scale + i) * outputWidth, scaledRow, 0, outputWidth);
+            }
+        }
+    }
+
+    /**
+     * Blend an atlas cell over the frame with its tile-sized core at (x, y), clipped to the board
+     */
+    private void blit(SpriteAtlas atlas, int cell, int x, int y) {
+        int[] source = atlas.getPixels();
+        int sourceWidth = atlas.getImageWidth();
+        int[] bounds = atlas.getContentBounds();
+        int left = x - SpriteAtlas.PADDING;
+        int top = y - SpriteAtlas.PADDING;
+        // Only the visible part of the cell, clipped to the board
+        int fromX = Math.max(bounds[cell * 4], -left);
+        int fromY = Math.max(bounds[cell * 4 + 1], -top);
+        int toX = Math.min(bounds[cell * 4 + 2], width - left);
+        int toY = Math.min(bounds[cell * 4 + 3], height - top);
+
+        for (int row = fromY; row < toY; row++) {
+            int sourceIndex = (atlas.getCellY(cell) + row) * sourceWidth + atlas.getCellX(cell);
+            int targetIndex = (top + row) * width + left;
+            for (int col = fromX; col < toX; col++) {
+                int argb = source[sourceIndex + col];
+                int alpha = argb >>> 24;
+                if (alpha == 255) {
+                    pixels[targetIndex + col] = argb;
+                } else if (alpha != 0) {
+                    pixels[targetIndex + col] = blend(argb, alpha, pixels[targetIndex + col]);
+                }
+            }
+        }
+    }
+
+    // Source over an opaque destination
+    private static int blend(int source, int alpha, int target) {
+        int keep = 255 - alpha;
+        int r = (((source >> 16) & 0xFF) * alpha + ((target >> 16) & 0xFF) * keep + 127) / 255;
+        int g = (((source >> 8) & 0xFF) * alpha + ((target >> 8) & 0xFF) * keep + 127) / 255;
+        int b = ((source & 0xFF) * alpha + (target & 0xFF) * keep + 127) / 255;
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+}
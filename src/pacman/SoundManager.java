@@ -1,18 +1,48 @@
 package pacman;
 
-import javax.sound.sampled.*;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
 
 /**
- * Manages all game sound effects using synthesized audio
+ * Manages all game sound effects using synthesized audio.
+ *
+ * The sounds are synthesized in parallel on a background thread, then saved to a cache file
+ * named after a checksum of this class, so a change to any generator invalidates it. Later
+ * launches just map that file. Until a sound is ready, playing it does nothing rather than wait.
+ *
+ * Each sound has voice rules for the mixer (see voiceRules): a chomp replaces the previous
+ * chomp instead of piling up, and death or eating a ghost always gets a voice, taking it from
+ * a chomp or other lesser sound if all are busy.
+ *
+ * SIREN and FRIGHTENED are background loops rather than buffers: the mixer synthesizes them as
+ * they play, and setLoop() switches between them.
  */
 public class SoundManager {
     
     private static SoundManager instance;
     private boolean soundEnabled = true;
-    private Map<String, byte[]> soundCache;
+    private final Map<String, AudioMixer.Sound> sounds = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
     private float volume = 0.7f;
+    private String loop = null;
+    private final AudioMixer mixer = new AudioMixer();
     
     // Sound types
     public static final String CHOMP = "chomp";
@@ -27,71 +57,230 @@ public class SoundManager {
     public static final String MENU_SELECT = "menu_select";
     public static final String MENU_NAVIGATE = "menu_navigate";
     
+    // Voice priorities: a sound may take the voice of a lower priority sound
+    private static final int PRIORITY_LOW = 0;
+    private static final int PRIORITY_NORMAL = 1;
+    private static final int PRIORITY_HIGH = 2;
+    
+    // Sound cache file: "PMSD", count, then per sound its UTF-8 name, length and PCM bytes
+    private static final int CACHE_MAGIC = 0x504D5344;
+    private static final Path CACHE_DIRECTORY = Paths.get(System.getProperty("user.home"), ".java-pacman");
+    
     private SoundManager() {
-        soundCache = new HashMap<>();
-        initializeSounds();
+        mixer.setVolume(volume);
+        Thread loader = new Thread(this::initializeSounds, "sound-loader");
+        loader.setDaemon(true);
+        loader.start();
     }
     
-    public static SoundManager getInstance() {
+    public static synchronized SoundManager getInstance() {
         if (instance == null) {
             instance = new SoundManager();
         }
         return instance;
     }
     
+    /**
+     * Whether every sound has been loaded or synthesized
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    private Map<String, Supplier<byte[]>> generators() {
+        Map<String, Supplier<byte[]>> generators = new LinkedHashMap<>();
+        generators.put(CHOMP, this::generateChompSound);
+        generators.put(POWER_PELLET, this::generatePowerPelletSound);
+        generators.put(EAT_GHOST, this::generateEatGhostSound);
+        generators.put(DEATH, this::generateDeathSound);
+        generators.put(GAME_START, this::generateGameStartSound);
+        generators.put(LEVEL_COMPLETE, this::generateLevelCompleteSound);
+        generators.put(EXTRA_LIFE, this::generateExtraLifeSound);
+        generators.put(FRIGHTENED, this::generateFrightenedSound);
+        generators.put(MENU_SELECT, this::generateMenuSelectSound);
+        generators.put(MENU_NAVIGATE, this::generateMenuNavigateSound);
+        return generators;
+    }
+    
     private void initializeSounds() {
-        // Pre-generate all sound effects
-        soundCache.put(CHOMP, generateChompSound());
-        soundCache.put(POWER_PELLET, generatePowerPelletSound());
-        soundCache.put(EAT_GHOST, generateEatGhostSound());
-        soundCache.put(DEATH, generateDeathSound());
-        soundCache.put(GAME_START, generateGameStartSound());
-        soundCache.put(LEVEL_COMPLETE, generateLevelCompleteSound());
-        soundCache.put(EXTRA_LIFE, generateExtraLifeSound());
-        soundCache.put(FRIGHTENED, generateFrightenedSound());
-        soundCache.put(MENU_SELECT, generateMenuSelectSound());
-        soundCache.put(MENU_NAVIGATE, generateMenuNavigateSound());
+        Map<String, Supplier<byte[]>> generators = generators();
+        Path cacheFile = getCacheFile();
+        if (cacheFile != null && loadCache(cacheFile, generators.keySet())) {
+            loaded = true;
+            return;
+        }
+        
+        // Synthesize every sound at once; each becomes playable as soon as it is done
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<String, Supplier<byte[]>> entry : generators.entrySet()) {
+            tasks.add(CompletableFuture.supplyAsync(entry.getValue())
+                    .thenAccept(data -> register(entry.getKey(), data)));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        
+        if (cacheFile != null) {
+            saveCache(cacheFile, generators.keySet());
+        }
+        loaded = true;
+    }
+    
+    /**
+     * Cache file for the current generators, or null if this class can't be checksummed
+     */
+    private static Path getCacheFile() {
+        try (InputStream in = SoundManager.class.getResourceAsStream("SoundManager.class")) {
+            if (in == null) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(in.readAllBytes());
+            return CACHE_DIRECTORY.resolve(String.format("sounds-%08x.pcm", crc.getValue()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private boolean loadCache(Path file, Iterable<String> names) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        Map<String, byte[]> cached = new LinkedHashMap<>();
+        try (FileChannel channel = FileChannel.open(file)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != CACHE_MAGIC) {
+                return false;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                byte[] data = new byte[buffer.getInt()];
+                buffer.get(data);
+                cached.put(new String(name, StandardCharsets.UTF_8), data);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupt: synthesize again
+            return false;
+        }
+        for (String name : names) {
+            if (!cached.containsKey(name)) {
+                return false;
+            }
+        }
+        cached.forEach(this::register);
+        return true;
+    }
+    
+    private void register(String name, byte[] data) {
+        sounds.put(name, voiceRules(name, data));
+    }
+    
+    /**
+     * How many copies of a sound may play at once, whether playing it again restarts it,
+     * and which sounds it may cut off when every voice is busy
+     */
+    static AudioMixer.Sound voiceRules(String name, byte[] data) {
+        switch (name) {
+            case CHOMP:
+            case MENU_NAVIGATE:
+                // Fired every tile or key press: only the newest one is heard
+                return new AudioMixer.Sound(data, PRIORITY_LOW, 1, true);
+            case EAT_GHOST:
+                // Ghosts eaten in quick succession overlap a little
+                return new AudioMixer.Sound(data, PRIORITY_HIGH, 2, true);
+            case DEATH:
+            case GAME_START:
+            case LEVEL_COMPLETE:
+            case EXTRA_LIFE:
+                return new AudioMixer.Sound(data, PRIORITY_HIGH, 1, false);
+            default:
+                return new AudioMixer.Sound(data, PRIORITY_NORMAL, 1, true);
+        }
+    }
+    
+    private void saveCache(Path file, Iterable<String> names) {
+        int size = 8;
+        int count = 0;
+        for (String name : names) {
+            size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 4 + sounds.get(name).getPcm().length;
+            count++;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(CACHE_MAGIC);
+        buffer.putInt(count);
+        for (String name : names) {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] data = sounds.get(name).getPcm();
+            buffer.putShort((short) nameBytes.length);
+            buffer.put(nameBytes);
+            buffer.putInt(data.length);
+            buffer.put(data);
+        }
+        
+        // Written next to the final name and moved into place, so a reader never sees half a file
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "sounds", ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            // No cache this time; the sounds are in memory anyway
+            return;
+        }
+        deleteStaleCaches(file);
+    }
+    
+    /**
+     * Remove cache files written by other versions of this class, which will never be read again
+     */
+    private static void deleteStaleCaches(Path current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(current.getParent(), "sounds-*.pcm")) {
+            for (Path file : files) {
+                if (!file.getFileName().equals(current.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // Left for the next save to clean up
+        }
     }
     
     public void play(String soundName) {
         if (!soundEnabled) return;
         
-        byte[] soundData = soundCache.get(soundName);
-        if (soundData == null) return;
+        AudioMixer.Sound sound = sounds.get(soundName);
+        if (sound == null) return;
         
-        // Play sound in a separate thread to avoid blocking
-        new Thread(() -> {
-            try {
-                AudioFormat format = new AudioFormat(44100, 8, 1, true, false);
-                DataLine.Info info = new DataLine.Info(SourceDataLine.class, format);
-                
-                if (!AudioSystem.isLineSupported(info)) {
-                    return;
-                }
-                
-                SourceDataLine line = (SourceDataLine) AudioSystem.getLine(info);
-                line.open(format);
-                
-                // Apply volume
-                if (line.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
-                    FloatControl gainControl = (FloatControl) line.getControl(FloatControl.Type.MASTER_GAIN);
-                    float dB = (float) (Math.log(volume) / Math.log(10.0) * 20.0);
-                    gainControl.setValue(Math.max(gainControl.getMinimum(), Math.min(dB, gainControl.getMaximum())));
-                }
-                
-                line.start();
-                line.write(soundData, 0, soundData.length);
-                line.drain();
-                line.close();
-            } catch (Exception e) {
-                // Silently ignore audio errors
-            }
-        }).start();
+        // Mixed into the one open audio line; no thread or line per sound
+        mixer.play(sound);
+    }
+    
+    /**
+     * Play SIREN or FRIGHTENED continuously in the background, or nothing if null
+     */
+    public void setLoop(String soundName) {
+        loop = soundName;
+        if (!soundEnabled || soundName == null) {
+            mixer.setLoop(AudioMixer.LOOP_NONE);
+        } else if (soundName.equals(SIREN)) {
+            mixer.setLoop(AudioMixer.LOOP_SIREN);
+        } else if (soundName.equals(FRIGHTENED)) {
+            mixer.setLoop(AudioMixer.LOOP_FRIGHTENED);
+        } else {
+            throw new IllegalArgumentException("Not a loop: " + soundName);
+        }
+    }
+    
+    /**
+     * How far through the level's dots the player is, 0..1; the siren rises with it
+     */
+    public void setSirenLevel(float level) {
+        mixer.setSirenLevel(level);
     }
     
     // Sound generation methods using simple waveforms
     
-    private byte[] generateChompSound() {
+    byte[] generateChompSound() {
         // Short "waka" sound
         int sampleRate = 44100;
         int duration = 50; // milliseconds
@@ -108,7 +297,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generatePowerPelletSound() {
+    byte[] generatePowerPelletSound() {
         // Longer ascending sound
         int sampleRate = 44100;
         int duration = 200;
@@ -125,7 +314,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateEatGhostSound() {
+    byte[] generateEatGhostSound() {
         // Satisfying "gulp" sound
         int sampleRate = 44100;
         int duration = 300;
@@ -145,7 +334,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateDeathSound() {
+    byte[] generateDeathSound() {
         // Descending spiral death sound
         int sampleRate = 44100;
         int duration = 1500;
@@ -165,7 +354,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateGameStartSound() {
+    byte[] generateGameStartSound() {
         // Classic Pac-Man intro-style jingle
         int sampleRate = 44100;
         int duration = 800;
@@ -190,7 +379,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateLevelCompleteSound() {
+    byte[] generateLevelCompleteSound() {
         // Victory fanfare
         int sampleRate = 44100;
         int duration = 600;
@@ -214,7 +403,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateExtraLifeSound() {
+    byte[] generateExtraLifeSound() {
         // Cheerful ascending arpeggio
         int sampleRate = 44100;
         int duration = 400;
@@ -238,7 +427,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateFrightenedSound() {
+    byte[] generateFrightenedSound() {
         // Wobbly, nervous sound
         int sampleRate = 44100;
         int duration = 150;
@@ -255,7 +444,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateMenuSelectSound() {
+    byte[] generateMenuSelectSound() {
         // Confirmation beep
         int sampleRate = 44100;
         int duration = 150;
@@ -272,7 +461,7 @@ public class SoundManager {
         return data;
     }
     
-    private byte[] generateMenuNavigateSound() {
+    byte[] generateMenuNavigateSound() {
         // Short blip
         int sampleRate = 44100;
         int duration = 50;
@@ -288,10 +477,18 @@ public class SoundManager {
         return data;
     }
     
+    /**
+     * Stop the mixer thread and close the audio line, on application exit
+     */
+    public void shutdown() {
+        mixer.stop();
+    }
+    
     // Settings
     
     public void setSoundEnabled(boolean enabled) {
         this.soundEnabled = enabled;
+        setLoop(loop);
     }
     
     public boolean isSoundEnabled() {
@@ -300,6 +497,7 @@ public class SoundManager {
     
     public void setVolume(float volume) {
         this.volume = Math.max(0, Math.min(1, volume));
+        mixer.setVolume(this.volume);
     }
     
     public float getVolume() {
@@ -0,0 +1,437 @@
+package pacman;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Every animation frame of Pac-Man and the ghosts, rasterized once into a single image so
+ * that each sprite is drawn with one drawImage call instead of a dozen shape calls.
+ *
+ * Cells are square, one tile plus PADDING on every side for the parts that overhang the tile
+ * (ghost skirt, antialiasing). The shapes are the ones GameBoard used to draw each frame,
+ * rasterized in software with 4x4 supersampling, so no FX toolkit or snapshot is needed.
+ * Cells are painted the first time they are needed, so creating an atlas is cheap; an atlas
+ * depends on the tile size and the Pac-Man color, and forStyle() shares them between games.
+ */
+public class SpriteAtlas {
+
+    public static final int PADDING = 3;
+
+    private static final int COLUMNS = 16;
+    private static final int SAMPLES = 4;
+
+    // Pac-Man: mouth angle goes 5..45 in steps of 5, and the death animation is over after 30 frames
+    private static final int MOUTH_STEPS = 9;
+    private static final int DEATH_FRAMES = 31;
+    // Direction.NONE is a separate eye direction for ghosts, but Pac-Man faces right then
+    private static final int EYE_DIRECTIONS = 5;
+    private static final int WAVE_PHASES = 2;
+
+    private static final int PAC_MOUTH = 0;
+    private static final int PAC_DEATH = PAC_MOUTH + 4 * MOUTH_STEPS;
+    private static final int GHOST_NORMAL = PAC_DEATH + DEATH_FRAMES;
+    private static final int GHOST_FRIGHTENED = GHOST_NORMAL + 4 * WAVE_PHASES * EYE_DIRECTIONS;
+    private static final int GHOST_EYES = GHOST_FRIGHTENED + 2 * WAVE_PHASES;
+    // Dots, for renderers that blit everything from the atlas
+    public static final int DOT_CELL = GHOST_EYES + EYE_DIRECTIONS;
+    public static final int POWER_PELLET_CELL = DOT_CELL + 1;
+    private static final int CELL_COUNT = POWER_PELLET_CELL + 1;
+
+    private static final Map<String, SpriteAtlas> CACHE = new HashMap<>();
+
+    private final int tileSize;
+    private final Color pacManColor;
+    private final int cellSize;
+    private final int width;
+    private final int height;
+    // Non-premultiplied ARGB of the whole atlas, row-major
+    private final int[] pixels;
+    private final WritableImage image;
+    private final boolean[] painted = new boolean[CELL_COUNT];
+    // Box around the non-transparent pixels of each cell: left, top, right, bottom (exclusive)
+    private final int[] contentBounds = new int[CELL_COUNT * 4];
+    private final Painter painter;
+
+    public SpriteAtlas(int tileSize, Color pacManColor) {
+        this.tileSize = tileSize;
+        this.pacManColor = pacManColor;
+        this.cellSize = tileSize + 2 * PADDING;
+        this.width = COLUMNS * cellSize;
+        this.height = (CELL_COUNT + COLUMNS - 1) / COLUMNS * cellSize;
+        this.pixels = new int[width * height];
+        this.image = new WritableImage(width, height);
+        this.painter = new Painter();
+    }
+
+    /**
+     * Make sure a cell is rasterized, both in getPixels() and in the image
+     */
+    public void prepare(int cell) {
+        if (painted[cell]) {
+            return;
+        }
+        painter.clear();
+        paintCell(painter, cell);
+        painter.copyTo(pixels, width, getCellX(cell), getCellY(cell));
+        findContentBounds(cell);
+        image.getPixelWriter().setPixels(getCellX(cell), getCellY(cell), cellSize, cellSize,
+                PixelFormat.getIntArgbInstance(), pixels, getCellY(cell) * width + getCellX(cell), width);
+        painted[cell] = true;
+    }
+
+    private void findContentBounds(int cell) {
+        int left = cellSize;
+        int top = cellSize;
+        int right = 0;
+        int bottom = 0;
+        for (int y = 0; y < cellSize; y++) {
+            int row = (getCellY(cell) + y) * width + getCellX(cell);
+            for (int x = 0; x < cellSize; x++) {
+                if (pixels[row + x] >>> 24 != 0) {
+                    left = Math.min(left, x);
+                    top = Math.min(top, y);
+                    right = Math.max(right, x + 1);
+                    bottom = Math.max(bottom, y + 1);
+                }
+            }
+        }
+        contentBounds[cell * 4] = left;
+        contentBounds[cell * 4 + 1] = top;
+        contentBounds[cell * 4 + 2] = Math.max(left, right);
+        contentBounds[cell * 4 + 3] = Math.max(top, bottom);
+    }
+
+    /**
+     * Rasterize every cell up front, e.g. while a menu is showing
+     */
+    public void prepareAll() {
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            prepare(cell);
+        }
+    }
+
+    /**
+     * Shared atlas for a tile size and Pac-Man color, built on first use
+     */
+    public static synchronized SpriteAtlas forStyle(int tileSize, Color pacManColor) {
+        return CACHE.computeIfAbsent(tileSize + "/" + pacManColor,
+                key -> new SpriteAtlas(tileSize, pacManColor));
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public Color getPacManColor() {
+        return pacManColor;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public WritableImage getImage() {
+        return image;
+    }
+
+    /**
+     * Atlas pixels as non-premultiplied ARGB, getImageWidth() per row;
+     * only cells that have been prepared are filled in
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getImageWidth() {
+        return width;
+    }
+
+    /**
+     * For each prepared cell, the box around its visible pixels relative to the cell:
+     * left, top, right, bottom (exclusive) at index cell * 4
+     */
+    int[] getContentBounds() {
+        return contentBounds;
+    }
+
+    public int getCellX(int cell) {
+        return (cell % COLUMNS) * cellSize;
+    }
+
+    public int getCellY(int cell) {
+        return (cell / COLUMNS) * cellSize;
+    }
+
+    public int getPacManCell(PacMan pacMan) {
+        if (!pacMan.isAlive()) {
+            return PAC_DEATH + Math.min(pacMan.getDeathAnimationFrame(), DEATH_FRAMES - 1);
+        }
+        int mouth = (int) Math.round((pacMan.getMouthAngle() - 5) / 5);
+        mouth = Math.max(0, Math.min(MOUTH_STEPS - 1, mouth));
+        return PAC_MOUTH + facing(pacMan.getDirection()) * MOUTH_STEPS + mouth;
+    }
+
+    public int getGhostCell(Ghost ghost) {
+        return getGhostCell(ghost.getType(), ghost.getDirection(), ghost.isFrightened(), ghost.isBlinking(),
+                ghost.isEaten(), ghost.getAnimationFrame());
+    }
+
+    /**
+     * Cell of swarm ghost i
+     */
+    public int getGhostCell(GhostSwarm swarm, int i) {
+        return getGhostCell(swarm.getType(i), swarm.getDirection(i), swarm.isFrightened(i), swarm.isBlinking(i),
+                swarm.isEaten(i), swarm.getAnimationFrame(i));
+    }
+
+    private int getGhostCell(Ghost.GhostType type, Direction direction, boolean frightened, boolean blinking,
+            boolean eaten, int animationFrame) {
+        int eyes = direction.ordinal();
+        if (eaten) {
+            return GHOST_EYES + eyes;
+        }
+        int wave = (animationFrame / 5) % 2;
+        if (frightened) {
+            return GHOST_FRIGHTENED + (blinking ? WAVE_PHASES : 0) + wave;
+        }
+        return GHOST_NORMAL + (type.ordinal() * WAVE_PHASES + wave) * EYE_DIRECTIONS + eyes;
+    }
+
+    /**
+     * Draw a cell with its tile-sized core at (x, y)
+     */
+    public void draw(GraphicsContext gc, int cell, double x, double y) {
+        prepare(cell);
+        gc.drawImage(image, getCellX(cell), getCellY(cell), cellSize, cellSize,
+                x - PADDING, y - PADDING, cellSize, cellSize);
+    }
+
+    // Pac-Man directions in cell order; NONE draws like RIGHT, as before
+    private static int facing(Direction direction) {
+        switch (direction) {
+            case LEFT: return 1;
+            case UP: return 2;
+            case DOWN: return 3;
+            default: return 0;
+        }
+    }
+
+    private void paintCell(Painter p, int cell) {
+        double center = PADDING + tileSize / 2.0;
+        double radius = tileSize / 2.0 - 1;
+
+        if (cell < PAC_DEATH) {
+            int facing = (cell - PAC_MOUTH) / MOUTH_STEPS;
+            double mouthAngle = 5 + 5 * ((cell - PAC_MOUTH) % MOUTH_STEPS);
+            double[] baseAngles = {0, 180, 90, 270};
+            p.fill(pie(center, center, radius, radius, baseAngles[facing] + mouthAngle, 360 - 2 * mouthAngle),
+                    pacManColor);
+        } else if (cell < GHOST_NORMAL) {
+            // Death animation - Pac-Man shrinking/disappearing
+            int frame = cell - PAC_DEATH;
+            double shrinkFactor = Math.max(0, 1 - frame / 30.0);
+            double deathAngle = frame * 6;
+            double r = radius * shrinkFactor;
+            p.fill(pie(center, center, r, r, 90 + deathAngle, 360 - deathAngle * 2), pacManColor);
+        } else if (cell < GHOST_FRIGHTENED) {
+            int index = cell - GHOST_NORMAL;
+            Direction eyes = Direction.fromOrdinal(index % EYE_DIRECTIONS);
+            int wave = (index / EYE_DIRECTIONS) % WAVE_PHASES;
+            Ghost.GhostType type = Ghost.GhostType.values()[index / (EYE_DIRECTIONS * WAVE_PHASES)];
+            paintGhostBody(p, center, radius, wave, GameBoard.getGhostColor(type));
+            paintGhostEyes(p, center, radius, eyes);
+        } else if (cell < GHOST_EYES) {
+            int index = cell - GHOST_FRIGHTENED;
+            boolean blinking = index >= WAVE_PHASES;
+            paintGhostBody(p, center, radius, index % WAVE_PHASES, blinking ? Color.WHITE : Color.BLUE);
+
+            // Frightened face
+            p.fill(ellipse(center - radius * 0.5, center - radius * 0.3, 4, 4), Color.WHITE);
+            p.fill(ellipse(center + radius * 0.2, center - radius * 0.3, 4, 4), Color.WHITE);
+
+            // Wavy mouth, a one pixel wide polyline
+            double lastX = center - radius * 0.5;
+            double lastY = center + radius * 0.3;
+            for (int i = 0; i < 4; i++) {
+                double mx = center - radius * 0.5 + i * radius * 0.3;
+                double my = center + radius * 0.3 + (i % 2 == 0 ? 2 : -2);
+                p.fill(segment(lastX, lastY, mx, my, 0.5), Color.WHITE);
+                lastX = mx;
+                lastY = my;
+            }
+        } else if (cell < DOT_CELL) {
+            // Eaten: just the eyes
+            paintGhostEyes(p, center, radius, Direction.fromOrdinal(cell - GHOST_EYES));
+        } else if (cell == DOT_CELL) {
+            p.fill(ellipse(center - 2, center - 2, 4, 4), Color.WHITE);
+        } else {
+            p.fill(ellipse(center - 5, center - 5, 10, 10), Color.WHITE);
+        }
+    }
+
+    private static void paintGhostBody(Painter p, double center, double radius, int waveOffset, Color color) {
+        // Rounded top, square middle, wavy bottom
+        p.fill(pie(center, center, radius, radius, 0, 180), color);
+        p.fill(rect(center - radius, center, radius * 2, radius), color);
+        for (int i = 0; i < 3; i++) {
+            double wx = center - radius + i * (radius * 2 / 3);
+            double wy = center + radius - 3;
+            double wh = (i + waveOffset) % 2 == 0 ? 6 : 3;
+            p.fill(ellipse(wx, wy, radius * 2 / 3, wh), color);
+        }
+    }
+
+    private static void paintGhostEyes(Painter p, double center, double radius, Direction direction) {
+        // Eye whites
+        p.fill(ellipse(center - radius * 0.6, center - radius * 0.4, radius * 0.5, radius * 0.6), Color.WHITE);
+        p.fill(ellipse(center + radius * 0.1, center - radius * 0.4, radius * 0.5, radius * 0.6), Color.WHITE);
+
+        // Pupils - look in direction of movement
+        double pupilOffsetX = direction.getDx() * 2;
+        double pupilOffsetY = direction.getDy() * 2;
+        p.fill(ellipse(center - radius * 0.45 + pupilOffsetX, center - radius * 0.25 + pupilOffsetY,
+                radius * 0.25, radius * 0.35), Color.BLUE);
+        p.fill(ellipse(center + radius * 0.2 + pupilOffsetX, center - radius * 0.25 + pupilOffsetY,
+                radius * 0.25, radius * 0.35), Color.BLUE);
+    }
+
+    /** Point-in-shape test in cell pixel coordinates */
+    private interface Inside {
+        boolean test(double x, double y);
+    }
+
+    /** A shape and its bounding box, so filling only samples the pixels it can cover */
+    private static final class Shape {
+        final double left;
+        final double top;
+        final double right;
+        final double bottom;
+        final Inside inside;
+
+        Shape(double left, double top, double right, double bottom, Inside inside) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.inside = inside;
+        }
+    }
+
+    // Same parameters as GraphicsContext.fillRect / fillOval
+    private static Shape rect(double x, double y, double w, double h) {
+        return new Shape(x, y, x + w, y + h, (px, py) -> px >= x && px < x + w && py >= y && py < y + h);
+    }
+
+    private static Shape ellipse(double x, double y, double w, double h) {
+        double cx = x + w / 2;
+        double cy = y + h / 2;
+        return new Shape(x, y, x + w, y + h, (px, py) -> {
+            double dx = (px - cx) / (w / 2);
+            double dy = (py - cy) / (h / 2);
+            return dx * dx + dy * dy <= 1;
+        });
+    }
+
+    // fillArc with ArcType.ROUND: angles in degrees, counterclockwise from 3 o'clock
+    private static Shape pie(double cx, double cy, double rx, double ry, double start, double extent) {
+        return new Shape(cx - rx, cy - ry, cx + rx, cy + ry, (px, py) -> {
+            if (rx <= 0 || ry <= 0 || extent <= 0) {
+                return false;
+            }
+            double dx = (px - cx) / rx;
+            double dy = (py - cy) / ry;
+            if (dx * dx + dy * dy > 1) {
+                return false;
+            }
+            if (extent >= 360) {
+                return true;
+            }
+            double angle = Math.toDegrees(Math.atan2(-dy, dx));
+            double relative = ((angle - start) % 360 + 360) % 360;
+            return relative <= extent;
+        });
+    }
+
+    private static Shape segment(double x0, double y0, double x1, double y1, double halfWidth) {
+        double lengthSquared = (x1 - x0) * (x1 - x0) + (y1 - y0) * (y1 - y0);
+        return new Shape(Math.min(x0, x1) - halfWidth, Math.min(y0, y1) - halfWidth,
+                Math.max(x0, x1) + halfWidth, Math.max(y0, y1) + halfWidth, (px, py) -> {
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1, ((px - x0) * (x1 - x0) + (py - y0) * (y1 - y0)) / lengthSquared));
+            double dx = px - (x0 + t * (x1 - x0));
+            double dy = py - (y0 + t * (y1 - y0));
+            return dx * dx + dy * dy <= halfWidth * halfWidth;
+        });
+    }
+
+    /**
+     * Composites shapes into one cell, source-over, using the supersampled coverage as alpha
+     */
+    private class Painter {
+        // Premultiplied RGBA per pixel
+        private final float[] rgba = new float[cellSize * cellSize * 4];
+
+        void clear() {
+            Arrays.fill(rgba, 0);
+        }
+
+        void fill(Shape shape, Color color) {
+            float r = (float) color.getRed();
+            float g = (float) color.getGreen();
+            float b = (float) color.getBlue();
+            float a = (float) color.getOpacity();
+            int minX = Math.max(0, (int) Math.floor(shape.left));
+            int minY = Math.max(0, (int) Math.floor(shape.top));
+            int maxX = Math.min(cellSize - 1, (int) Math.ceil(shape.right));
+            int maxY = Math.min(cellSize - 1, (int) Math.ceil(shape.bottom));
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int hits = 0;
+                    for (int sy = 0; sy < SAMPLES; sy++) {
+                        for (int sx = 0; sx < SAMPLES; sx++) {
+                            if (shape.inside.test(x + (sx + 0.5) / SAMPLES, y + (sy + 0.5) / SAMPLES)) {
+                                hits++;
+                            }
+                        }
+                    }
+                    if (hits == 0) {
+                        continue;
+                    }
+                    float alpha = a * hits / (SAMPLES * SAMPLES);
+                    int i = (y * cellSize + x) * 4;
+                    float keep = 1 - alpha;
+                    rgba[i] = r * alpha + rgba[i] * keep;
+                    rgba[i + 1] = g * alpha + rgba[i + 1] * keep;
+                    rgba[i + 2] = b * alpha + rgba[i + 2] * keep;
+                    rgba[i + 3] = alpha + rgba[i + 3] * keep;
+                }
+            }
+        }
+
+        void copyTo(int[] target, int stride, int left, int top) {
+            for (int y = 0; y < cellSize; y++) {
+                for (int x = 0; x < cellSize; x++) {
+                    int i = (y * cellSize + x) * 4;
+                    float alpha = rgba[i + 3];
+                    int argb = 0;
+                    if (alpha > 0) {
+                        argb = toByte(alpha) << 24
+                                | toByte(rgba[i] / alpha) << 16
+                                | toByte(rgba[i + 1] / alpha) << 8
+                                | toByte(rgba[i + 2] / alpha);
+                    }
+                    target[(top + y) * stride + left + x] = argb;
+                }
+            }
+        }
+
+        private int toByte(float value) {
+            return Math.min(255, Math.round(value * 255));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package pacman;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds, cheap enough to record on every tick.
+ * Buckets are log-linear: each power of two is split into SUB_BUCKETS equal parts, so any
+ * recorded value is known to within 1/SUB_BUCKETS (12.5%) up to about a minute.
+ *
+ * record() never allocates or locks. It is meant to be written by a single thread (the game loop);
+ * other threads may read it at any time and see slightly stale but usable numbers.
+ */
+public class TimingHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below SUB_BUCKETS ns get a bucket each; after that one row of SUB_BUCKETS per power of two
+    private static final int MAX_EXPONENT = 36; // 2^36 ns is about 69 seconds
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final String name;
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    public TimingHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucketOf(nanos)]++;
+        count++;
+        sum += nanos;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Largest value that falls into a bucket
+    private static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long base = 1L << exponent;
+        return base + (sub + 1) * (base >>> SUB_BUCKET_BITS) - 1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Duration that the given fraction (0..1) of the recorded values did not exceed,
+     * at bucket resolution and never above the maximum
+     */
+    public long getPercentile(double fraction) {
+        long target = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return Math.min(bucketLimit(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * One line summary in milliseconds: name, count, p50, p99, max
+     */
+    public String summary() {
+        return String.format("%-10s n=%-8d p50 %7.3f  p99 %7.3f  max %7.3f ms",
+                name, count, getPercentile(0.5) / 1e6, getPercentile(0.99) / 1e6, max / 1e6);
+    }
+}
@@ -0,0 +1,87 @@
+package pacman;
+
+/**
+ * What a GhostBrain may look at when it decides: Pac-Man's tile and heading, every ghost's tile
+ * and the map's navigation table. The simulation refreshes it once per tick, after Pac-Man moves
+ * and before any ghost does, so all ghosts decide on the same picture regardless of update order.
+ *
+ * Brains only get read access. The view is reused from tick to tick, so it must not be kept
+ * past the call it was passed to.
+ */
+public class WorldView {
+
+    private NavGraph nav;
+    private int pacManTileX;
+    private int pacManTileY;
+    private Direction pacManDirection = Direction.NONE;
+    private final Ghost.GhostType[] ghostTypes;
+    private final int[] ghostTileX;
+    private final int[] ghostTileY;
+
+    WorldView(Ghost[] ghosts) {
+        this.ghostTypes = new Ghost.GhostType[ghosts.length];
+        this.ghostTileX = new int[ghosts.length];
+        this.ghostTileY = new int[ghosts.length];
+        for (int i = 0; i < ghosts.length; i++) {
+            ghostTypes[i] = ghosts[i].getType();
+        }
+    }
+
+    /**
+     * Copy the positions of this tick
+     */
+    void update(Maze maze, PacMan pacMan, Ghost[] ghosts) {
+        nav = maze.getNavGraph();
+        pacManTileX = pacMan.getTileX();
+        pacManTileY = pacMan.getTileY();
+        pacManDirection = pacMan.getDirection();
+        for (int i = 0; i < ghosts.length; i++) {
+            ghostTileX[i] = ghosts[i].getTileX();
+            ghostTileY[i] = ghosts[i].getTileY();
+        }
+    }
+
+    public NavGraph getNavGraph() {
+        return nav;
+    }
+
+    public int getPacManTileX() {
+        return pacManTileX;
+    }
+
+    public int getPacManTileY() {
+        return pacManTileY;
+    }
+
+    public Direction getPacManDirection() {
+        return pacManDirection;
+    }
+
+    public int getGhostCount() {
+        return ghostTypes.length;
+    }
+
+    public Ghost.GhostType getGhostType(int index) {
+        return ghostTypes[index];
+    }
+
+    public int getGhostTileX(int index) {
+        return ghostTileX[index];
+    }
+
+    public int getGhostTileY(int index) {
+        return ghostTileY[index];
+    }
+
+    /**
+     * Index of the first ghost of the given type, or -1 if there is none
+     */
+    public int findGhost(Ghost.GhostType type) {
+        for (int i = 0; i < ghostTypes.length; i++) {
+            if (ghostTypes[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,43 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SNAPSHOT_BYTES is the documented size of a snapshot, so it must match what writeSnapshot() writes.
+ */
+class GameSnapshotTest {
+
+    @Test
+    void captureFillsExactlySnapshotBytes() {
+        Simulation simulation = new Simulation(0, 1, 42);
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.capture(simulation);
+        assertEquals(Simulation.SNAPSHOT_BYTES, snapshot.getBuffer().limit());
+
+        // Same size mid-game
+        for (int i = 0; i < 500 && !simulation.isGameOver(); i++) {
+            simulation.step(Direction.fromOrdinal(i / 40 % 4));
+        }
+        snapshot.capture(simulation);
+        assertEquals(Simulation.SNAPSHOT_BYTES, snapshot.getBuffer().limit());
+    }
+
+    @Test
+    void restoreReproducesTheCapturedState() {
+        Simulation simulation = new Simulation(1, 1, 7);
+        for (int i = 0; i < 200; i++) {
+            simulation.step(Direction.LEFT);
+        }
+        GameSnapshot snapshot = new GameSnapshot();
+        snapshot.capture(simulation);
+        long checksum = simulation.checksum();
+
+        for (int i = 0; i < 200; i++) {
+            simulation.step(Direction.UP);
+        }
+        snapshot.restore(simulation);
+        assertEquals(checksum, simulation.checksum());
+    }
+}
@@ -0,0 +1,47 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A saved replay must load back and play to the exact end state that was recorded.
+ */
+class ReplayTest {
+
+    @Test
+    void savedReplayPlaysBackToTheRecordedEnd(@TempDir Path dir) throws IOException {
+        long seed = 2024;
+        Simulation simulation = new Simulation(1, 2, seed);
+        Replay replay = new Replay(seed, 1, 2, 0);
+        InputPolicy policy = InputPolicy.random(0.05);
+        GameRandom inputs = new GameRandom(5);
+        for (int i = 0; i < 3000 && !simulation.isGameOver(); i++) {
+            Direction input = policy.nextInput(simulation, inputs);
+            if (input != null) {
+                replay.record(simulation.getTick() + 1, input);
+            }
+            simulation.step(input);
+        }
+        replay.finish(simulation);
+        assertTrue(replay.getInputCount() > 0);
+
+        Path file = dir.resolve("game.replay");
+        replay.save(file);
+        assertTrue(Files.size(file) > 0);
+        Replay loaded = Replay.load(file);
+        assertEquals(replay.getInputCount(), loaded.getInputCount());
+        assertEquals(replay.getEndTick(), loaded.getEndTick());
+
+        ReplayPlayer player = new ReplayPlayer(loaded);
+        player.runToEnd();
+        assertTrue(player.isFinished());
+        assertTrue(player.matchesRecording(), "replay ended at tick " + player.getSimulation().getTick()
+                + " score " + player.getSimulation().getScore() + ", recorded " + replay.getFinalScore());
+    }
+}
@@ -0,0 +1,45 @@
+package pacman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A seed plus the inputs must reproduce the same game; replays and save games rely on it.
+ */
+class SimulationDeterminismTest {
+
+    @Test
+    void sameSeedAndInputsGiveSameChecksum() {
+        for (int mapIndex = 0; mapIndex < MapTemplates.MAP_COUNT; mapIndex++) {
+            Simulation first = new Simulation(mapIndex, 1, 1234);
+            Simulation second = new Simulation(mapIndex, 1, 1234);
+            InputPolicy policy = InputPolicy.random(0.05);
+            GameRandom firstInputs = new GameRandom(99);
+            GameRandom secondInputs = new GameRandom(99);
+
+            for (int i = 0; i < 3000 && !first.isGameOver(); i++) {
+                int firstEvents = first.step(policy.nextInput(first, firstInputs));
+                int secondEvents = second.step(policy.nextInput(second, secondInputs));
+                assertEquals(firstEvents, secondEvents, "events at tick " + first.getTick());
+                assertEquals(first.checksum(), second.checksum(), "map " + mapIndex + " tick " + first.getTick());
+            }
+            assertEquals(first.isGameOver(), second.isGameOver());
+        }
+    }
+
+    @Test
+    void restartReplaysTheSameGame() {
+        Simulation simulation = new Simulation(0, 1, 77);
+        for (int i = 0; i < 2000 && !simulation.isGameOver(); i++) {
+            simulation.step(Direction.fromOrdinal(i / 60 % 4));
+        }
+        long checksum = simulation.checksum();
+
+        simulation.restart();
+        for (int i = 0; i < 2000 && !simulation.isGameOver(); i++) {
+            simulation.step(Direction.fromOrdinal(i / 60 % 4));
+        }
+        assertEquals(checksum, simulation.checksum());
+    }
+}